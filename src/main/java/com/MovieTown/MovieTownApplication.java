@@ -1,11 +1,24 @@
 package com.MovieTown;
 
 import com.MovieTown.beans.*;
+import com.MovieTown.utils.LruCache;
+import com.MovieTown.utils.MappedSessionStore;
+import com.MovieTown.utils.SessionStore;
+import com.MovieTown.utils.StripedSessionStore;
+import com.MovieTown.utils.TimingWheel;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
 
 @SpringBootApplication
@@ -17,8 +30,51 @@ public class MovieTownApplication {
 		movieTownServer.runApplication();
 	}
 
+	//The sessions are shared by all the request threads, so they are split into stripes that scale with the number of cores
 	@Bean
-	public HashMap<String, MySession> sessions(){
-		return new HashMap<String, MySession>();
+	//When a sessions file is configured, the sessions are also kept in it and reloaded from it when the server restarts
+	public SessionStore sessions(@Value("${movietown.sessions.capacity:100000}") int capacity, @Value("${movietown.sessions.file:}") String file,
+								 @Value("${movietown.sessions.compact-minutes:5}") long compactMinutes) throws IOException {
+		StripedSessionStore sessions = new StripedSessionStore(capacity, Runtime.getRuntime().availableProcessors() * 4);
+		if(file.isEmpty())
+			return sessions;
+		MappedSessionStore mapped = new MappedSessionStore(sessions, Paths.get(file), capacity * 2, compactMinutes * 60 * 1000);
+		//The sessions evicted from memory are removed from the file too, so they don't come back after a restart
+		sessions.setEvictionListener(mapped::evicted);
+		return mapped;
+	}
+
+	//The tokens' signing algorithm and verifier are thread safe, so they are built once and shared
+	@Bean
+	public Algorithm jwtAlgorithm(@Value("${movietown.jwt.secret:The town of all movies}") String secret){
+		return Algorithm.HMAC256(secret);
+	}
+
+	@Bean
+	public JWTVerifier jwtVerifier(Algorithm jwtAlgorithm){
+		return JWT.require(jwtAlgorithm).withIssuer("Movie Town").build();
+	}
+
+	@Bean
+	public LruCache<Long, VerifiedToken> verifiedTokens(@Value("${movietown.jwt.cache-size:100000}") int capacity){
+		return new LruCache<>(capacity, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	//BCrypt's cost grows twice with every step of the strength
+	@Bean
+	public PasswordEncoder passwordEncoder(@Value("${movietown.passwords.strength:10}") int strength){
+		return new BCryptPasswordEncoder(strength);
+	}
+
+	//The ids of recently seen users by their emails
+	@Bean
+	public LruCache<String, Integer> userIds(@Value("${movietown.users.cache-size:10000}") int capacity){
+		return new LruCache<>(capacity, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	//A wheel of 2048 one-second buckets (34 minutes a round), shared by everything that expires: seat holds and sessions
+	@Bean
+	public TimingWheel timingWheel(){
+		return new TimingWheel(1000, 2048);
 	}
 }
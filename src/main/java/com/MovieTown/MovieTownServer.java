@@ -1,33 +1,52 @@
 package com.MovieTown;
 
+import com.MovieTown.utils.MappedSessionStore;
 import com.MovieTown.utils.ScreeningDeleteJob;
-import com.MovieTown.utils.SessionsJob;
+import com.MovieTown.utils.SessionStore;
+import com.MovieTown.utils.TimingWheel;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+
 @Service
 public class MovieTownServer {
 
     private ScreeningDeleteJob screeningDeleteJob;
 
-    private SessionsJob sessionsJob;
+    private TimingWheel timingWheel;
+
+    private SessionStore sessions;
 
-    public MovieTownServer(ScreeningDeleteJob screeningDeleteJob, SessionsJob sessionsJob) {
+    public MovieTownServer(ScreeningDeleteJob screeningDeleteJob, TimingWheel timingWheel, SessionStore sessions) {
         this.screeningDeleteJob = screeningDeleteJob;
-        this.sessionsJob = sessionsJob;
+        this.timingWheel = timingWheel;
+        this.sessions = sessions;
     }
 
+    /***
+     * This method starts the server's background jobs. They run until the application is closed.
+     */
     public void runApplication() {
-        Thread thread = new Thread(screeningDeleteJob);
-        Thread thread2 = new Thread(sessionsJob);
+        Thread thread = new Thread(screeningDeleteJob, "screening-delete-job");
+        Thread wheelThread = new Thread(timingWheel, "timing-wheel");
+        thread.setDaemon(true);
+        wheelThread.setDaemon(true);
         try {
             thread.start();
-            thread2.start();
+            wheelThread.start();
+            if(sessions instanceof MappedSessionStore){
+                Thread compactionThread = new Thread((MappedSessionStore) sessions, "session-compaction");
+                compactionThread.setDaemon(true);
+                compactionThread.start();
+            }
         }catch (Exception e){
             System.out.println(e.getMessage());
         }
-        finally {
-            screeningDeleteJob.stop();
-            sessionsJob.stop();
-        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        screeningDeleteJob.stop();
+        timingWheel.stop();
     }
 }
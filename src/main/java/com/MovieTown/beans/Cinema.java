@@ -8,7 +8,7 @@ import java.util.HashMap;
 import java.util.List;
 
 @Entity
-@Table(name = "cinemas")
+@Table(name = "cinemas", indexes = @Index(name = "idx_cinemas_city", columnList = "city"))
 public class Cinema {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
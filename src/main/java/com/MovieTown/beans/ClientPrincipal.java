@@ -0,0 +1,50 @@
+package com.MovieTown.beans;
+
+//The client a request was authenticated as. The token filter builds it once per request and the controllers receive it as a parameter.
+public class ClientPrincipal {
+
+    public static final String ATTRIBUTE = ClientPrincipal.class.getName();
+
+    private final VerifiedToken token;
+    private final long tokenHash;
+    //The client's session, or null if the client has none (a token can still sign out without a session)
+    private final MySession session;
+
+    public ClientPrincipal(VerifiedToken token, long tokenHash, MySession session) {
+        this.token = token;
+        this.tokenHash = tokenHash;
+        this.session = session;
+    }
+
+    public String getToken() {
+        return token.getToken();
+    }
+
+    public long getTokenHash() {
+        return tokenHash;
+    }
+
+    public Role getRole() {
+        return token.getRole();
+    }
+
+    public int getUserId() {
+        return token.getId();
+    }
+
+    public long getExpiresAt() {
+        return token.getExpiresAt();
+    }
+
+    public MySession getSession() {
+        return session;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientPrincipal{" +
+                "role=" + token.getRole() +
+                ", userId=" + token.getId() +
+                '}';
+    }
+}
@@ -0,0 +1,63 @@
+package com.MovieTown.beans;
+
+//A compact representation of a screening's seats: the reserved seats are a base64 bitset instead of a list of Seat objects.
+//Bit (row - 1) * numOfColumns + (column - 1) is set when the seat is reserved, bits are packed from the lowest bit of each byte.
+public class CompactSeatMap {
+
+    //Clients that send this media type in the Accept header get the compact seat map
+    public static final String MEDIA_TYPE = "application/vnd.movietown.seatmap+json";
+
+    private int screeningId;
+    private int numOfRows;
+    private int numOfColumns;
+    private long version;
+    private String reserved;
+
+    public CompactSeatMap(int screeningId, int numOfRows, int numOfColumns, long version, String reserved) {
+        this.screeningId = screeningId;
+        this.numOfRows = numOfRows;
+        this.numOfColumns = numOfColumns;
+        this.version = version;
+        this.reserved = reserved;
+    }
+
+    /***
+     * This method checks if a client asked for the compact seat map
+     * @param format the request's format parameter
+     * @param accept the request's Accept header
+     * @return true if the format is "compact" or the Accept header contains the compact media type
+     */
+    public static boolean isRequested(String format, String accept){
+        return "compact".equalsIgnoreCase(format) || (accept != null && accept.contains(MEDIA_TYPE));
+    }
+
+    public int getScreeningId() {
+        return screeningId;
+    }
+
+    public int getNumOfRows() {
+        return numOfRows;
+    }
+
+    public int getNumOfColumns() {
+        return numOfColumns;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getReserved() {
+        return reserved;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactSeatMap{" +
+                "screeningId=" + screeningId +
+                ", numOfRows=" + numOfRows +
+                ", numOfColumns=" + numOfColumns +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,19 @@
+package com.MovieTown.beans;
+
+//The sizes a movie's poster is resized to, by their width in pixels
+public enum ImageSize {
+
+    THUMBNAIL(120),
+    SMALL(320),
+    MEDIUM(640);
+
+    private final int width;
+
+    ImageSize(int width) {
+        this.width = width;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+}
@@ -1,6 +1,7 @@
 package com.MovieTown.beans;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.sun.istack.NotNull;
 import org.hibernate.annotations.Cascade;
 
@@ -10,7 +11,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 @Entity
-@Table(name = "movies")
+@Table(name = "movies", indexes = @Index(name = "idx_movies_genre", columnList = "genre"))
 public class Movie {
 
     @Id
@@ -19,8 +20,13 @@ public class Movie {
     //@Column(nullable = false)
     private String name;
 
-    @Column(columnDefinition = "MEDIUMTEXT")
+    //The poster as it's received from the admin (base64 or a data url), it's kept in the image store and not in the DB
+    @Transient
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String image;
+    //The poster's version in the image store, null if the movie has no poster
+    @JsonIgnore
+    private Long imageVersion;
     @Enumerated(value = EnumType.STRING)
     //@Column(nullable = false)
     private Genre genre;
@@ -60,6 +66,32 @@ public class Movie {
         this.image = image;
     }
 
+    public Long getImageVersion() {
+        return imageVersion;
+    }
+
+    public void setImageVersion(Long imageVersion) {
+        this.imageVersion = imageVersion;
+    }
+
+    /***
+     * This method returns the url of the movie's poster.
+     * The url changes with the poster's version, so clients can cache it for as long as they like.
+     * @return the poster's url, or null if the movie has no poster
+     */
+    public String getImageUrl() {
+        return imageVersion == null ? null : "/client/movies/" + id + "/image?v=" + Long.toHexString(imageVersion);
+    }
+
+    /***
+     * This method returns the url of a small variant of the movie's poster, for lists of movies
+     * @return the thumbnail's url, or null if the movie has no poster
+     */
+    public String getThumbnailUrl() {
+        String imageUrl = getImageUrl();
+        return imageUrl == null ? null : imageUrl + "&size=" + ImageSize.THUMBNAIL;
+    }
+
     public Genre getGenre() {
         return genre;
     }
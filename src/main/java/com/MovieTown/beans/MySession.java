@@ -1,19 +1,24 @@
 package com.MovieTown.beans;
 
-import com.MovieTown.services.Registered;
-
+//A logged in client's session: only who the client is, the services are shared between all the sessions
 public class MySession {
 
-    private Registered service;
-    private long lastActive;
+    private int userId;
+    private Role role;
+    private volatile long lastActive;
 
-    public MySession(Registered service, long lastActive) {
-        this.service = service;
+    public MySession(int userId, Role role, long lastActive) {
+        this.userId = userId;
+        this.role = role;
         this.lastActive = lastActive;
     }
 
-    public Registered getService() {
-        return service;
+    public int getUserId() {
+        return userId;
+    }
+
+    public Role getRole() {
+        return role;
     }
 
     public long getLastActive() {
@@ -27,7 +32,8 @@ public class MySession {
     @Override
     public String toString() {
         return "MySession{" +
-                "service=" + service.toString() +
+                "userId=" + userId +
+                ", role=" + role +
                 '}';
     }
 }
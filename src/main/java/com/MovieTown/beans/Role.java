@@ -0,0 +1,6 @@
+package com.MovieTown.beans;
+
+public enum Role {
+    USER,
+    ADMINISTRATOR
+}
@@ -1,6 +1,7 @@
 package com.MovieTown.beans;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.sun.istack.NotNull;
 
 import javax.persistence.*;
@@ -8,7 +9,7 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "screenings")
+@Table(name = "screenings", indexes = @Index(name = "idx_screenings_cinema_time", columnList = "cinema_id, time"))
 public class Screening {
 
     @Id
@@ -23,6 +24,10 @@ public class Screening {
     private List<Seat> seats;
     //@Column(nullable = false)
     private Date time;
+    //Counts the reserved seats, it's only changed by orders (with update statements) and not by saving the screening
+    @Column(columnDefinition = "int default 0", insertable = false, updatable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private int reservedSeats;
 
     public Screening() {
     }
@@ -61,6 +66,15 @@ public class Screening {
         this.time = time;
     }
 
+    public int getReservedSeats() {
+        return reservedSeats;
+    }
+
+    //The number of seats left for the screening, without loading its seats
+    public int getAvailableSeats() {
+        return cinema == null ? 0 : cinema.getNumOfRows() * cinema.getNumOfColumns() - reservedSeats;
+    }
+
     @Override
     public String toString() {
         return "Screening{" +
@@ -68,6 +82,7 @@ public class Screening {
                 ", cinema=" + cinema +
                 ", movie=" + movie +
                 ", time=" + time +
+                ", reservedSeats=" + reservedSeats +
                 '}';
     }
 }
@@ -6,7 +6,8 @@ import javax.persistence.*;
 import java.util.Date;
 
 @Entity
-@Table(name = "seats")
+//A seat can only exist once in a screening, which also makes reserving it in the sparse storage mode atomic
+@Table(name = "seats", uniqueConstraints = @UniqueConstraint(columnNames = {"screening_id", "row", "column"}))
 public class Seat {
 
     @Id
@@ -32,6 +33,14 @@ public class Seat {
         this.reserved = false;
     }
 
+    public Seat(long id, int row, int column, boolean reserved, Screening screening){
+        this.id = id;
+        this.row = row;
+        this.column = column;
+        this.reserved = reserved;
+        this.screening = screening;
+    }
+
     public long getId() {
         return id;
     }
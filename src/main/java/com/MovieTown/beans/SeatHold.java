@@ -0,0 +1,80 @@
+package com.MovieTown.beans;
+
+import com.MovieTown.utils.TimingWheel;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Date;
+
+//A block of adjacent seats that is held for a user until it's confirmed as an order or expires
+public class SeatHold {
+
+    private String id;
+    @JsonIgnore
+    private int userId;
+    private int screeningId;
+    private int row;
+    private int firstColumn;
+    private int numOfSeats;
+    private Date expiresAt;
+    @JsonIgnore
+    private TimingWheel.Timeout timeout;
+
+    public SeatHold(String id, int userId, int screeningId, int row, int firstColumn, int numOfSeats, Date expiresAt) {
+        this.id = id;
+        this.userId = userId;
+        this.screeningId = screeningId;
+        this.row = row;
+        this.firstColumn = firstColumn;
+        this.numOfSeats = numOfSeats;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public int getScreeningId() {
+        return screeningId;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getFirstColumn() {
+        return firstColumn;
+    }
+
+    public int getNumOfSeats() {
+        return numOfSeats;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public TimingWheel.Timeout getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(TimingWheel.Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String toString() {
+        return "SeatHold{" +
+                "id='" + id + '\'' +
+                ", userId=" + userId +
+                ", screeningId=" + screeningId +
+                ", row=" + row +
+                ", firstColumn=" + firstColumn +
+                ", numOfSeats=" + numOfSeats +
+                ", expiresAt=" + expiresAt +
+                '}';
+    }
+}
@@ -1,6 +1,7 @@
 package com.MovieTown.beans;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.persistence.*;
 import java.util.List;
@@ -13,7 +14,14 @@ public class User {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
     @Column(nullable = false)
-    private String name, email, password;
+    private String name;
+    //The email is unique, so users are found by it through an index
+    @Column(nullable = false, unique = true)
+    private String email;
+    //The password's hash, it's only read from requests and never written to responses
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private String password;
     @OneToMany(mappedBy = "user")
     @JsonIgnore
     private List<Order> orders;
@@ -30,6 +38,10 @@ public class User {
         return id;
     }
 
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public String getName() {
         return name;
     }
@@ -68,7 +80,6 @@ public class User {
                 "id=" + id +
                 ", name='" + name + '\'' +
                 ", email='" + email + '\'' +
-                ", password='" + password + '\'' +
                 '}';
     }
 }
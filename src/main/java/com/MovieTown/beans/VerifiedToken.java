@@ -0,0 +1,42 @@
+package com.MovieTown.beans;
+
+//The claims of a token whose signature was already verified, so repeated requests don't decode it again
+public class VerifiedToken {
+
+    private String token;
+    private Role role;
+    private int id;
+    //The token's expiry time in milliseconds
+    private long expiresAt;
+
+    public VerifiedToken(String token, Role role, int id, long expiresAt) {
+        this.token = token;
+        this.role = role;
+        this.id = id;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "VerifiedToken{" +
+                "role=" + role +
+                ", id=" + id +
+                '}';
+    }
+}
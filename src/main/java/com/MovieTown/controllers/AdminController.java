@@ -2,39 +2,41 @@ package com.MovieTown.controllers;
 
 import com.MovieTown.beans.*;
 import com.MovieTown.exceptions.*;
+import com.MovieTown.filters.RequiresRole;
 import com.MovieTown.services.AdminService;
+import com.MovieTown.services.MetricsService;
 import com.MovieTown.services.UserService;
+import com.MovieTown.utils.Keyset;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import javax.servlet.http.HttpServletRequest;
-import java.util.HashMap;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 
 @RestController
 @RequestMapping(path = "/admin")
+@RequiresRole(Role.ADMINISTRATOR)
 public class AdminController {
 
-    private HashMap<String, MySession> sessions;
+    private AdminService adminService;
+    private MetricsService metricsService;
 
-    public AdminController(HashMap<String, MySession> sessions) {
-        this.sessions = sessions;
+    public AdminController(AdminService adminService, MetricsService metricsService) {
+        this.adminService = adminService;
+        this.metricsService = metricsService;
     }
 
     /***
      * This movie receives a Movie object and adds it to the DB
      * @param movie a Movie object
-     * @param request a client's request
      * @return a Movie object or an error request if something's wrong (the client is not an admin or the
      * service wasn't able to add
      */
     @PostMapping(path = "/movies/add")
-    public ResponseEntity<?> addMovie(@RequestBody Movie movie, HttpServletRequest request){
+    public ResponseEntity<?> addMovie(@RequestBody Movie movie){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.addMovie(movie));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -43,18 +45,14 @@ public class AdminController {
     /***
      * This movie receives a Movie object and updates it in the DB
      * @param movie a Movie object
-     * @param request a client's request
      * @return a Movie object or an error request if something's wrong (the client is not an admin or the service wasn't
      * able to update
      */
     @PutMapping(path = "/movies/update")
-    public ResponseEntity<?> updateMovie(@RequestBody Movie movie, HttpServletRequest request){
+    public ResponseEntity<?> updateMovie(@RequestBody Movie movie){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.updateMovie(movie));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        } catch (NoSuchMovieException | InvalidMovieUpdateException | MovieExistsException e) {
+        } catch (NoSuchMovieException | InvalidMovieUpdateException | MovieExistsException | IOException | IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
@@ -62,17 +60,13 @@ public class AdminController {
     /***
      * This method receives a movie id and deletes the corresponding object in the DB
      * @param id a movie id
-     * @param request a client's request
      * @return a confirmation of deletion or an error request if something's wrong (the client is not an admin or
      * the service wasn't able to delete
      */
     @DeleteMapping(path = "/movies/{id}")
-    public ResponseEntity<?> deleteMovie(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> deleteMovie(@PathVariable int id){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.deleteMovie(id));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (NoSuchMovieException e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
@@ -81,50 +75,40 @@ public class AdminController {
     /***
      * This method returns a movie object with a given id
      * @param id a movie's id
-     * @param request a client's request
      * @return a movie object or an error message if something's wrong (the client isn't an admin or the service wasn't able to fetch)
      */
     @GetMapping(path = "/movies/{id}")
-    public ResponseEntity<?> getMovieById(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> getMovieById(@PathVariable int id){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.getMovieById(id));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (NoSuchMovieException e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
     /***
-     * This method returns a list of all the movies in the DB
-     * @param request a client's request
-     * @return a list of all the movies in the DB or an error message if something's wrong (the client isn't an admin)
+     * This method returns a list of all the movies in the DB, or a page of them ordered by id
+     * @param after the id of the last movie of the previous page, from the X-Next-Cursor header (optional)
+     * @param limit the number of movies in a page, at most 100 (optional, all the movies are returned without it)
+     * @return a list of the movies in the DB or an error message if something's wrong (the client isn't an admin)
      */
     @GetMapping(path = "/movies")
-    public ResponseEntity<?> getAllMovies(HttpServletRequest request){
-        try {
-            AdminService adminService = ifAuthorized(request);
+    public ResponseEntity<?> getAllMovies(@RequestParam(defaultValue = "0") int after, @RequestParam(required = false) Integer limit){
+        if(limit == null)
             return ResponseEntity.ok(adminService.getAllMovies());
-        }catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+        return Keyset.toResponse(adminService.getMovies(after, limit), Movie::getId);
     }
 
     /***
      * This method receives a Cinema object and adds it to the DB
      * @param cinema a Cinema object
-     * @param request a client's request
      * @return a Cinema object with an updated id or an error message if something's wrong (the client isn't an admin or
      * the service wasn't able to add)
      */
     @PostMapping(path = "/cinemas/add")
-    public ResponseEntity<?> addCinema(@RequestBody Cinema cinema, HttpServletRequest request){
+    public ResponseEntity<?> addCinema(@RequestBody Cinema cinema){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.addCinema(cinema));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -133,17 +117,13 @@ public class AdminController {
     /***
      * This method receives a cinema id and deletes the corresponding object in the DB
      * @param id a Cinema id
-     * @param request a client's request
      * @return a confirmation of deletion or an error request if something's wrong (the client is not an admin or
      * the service wasn't able to delete)
      */
     @DeleteMapping(path = "/cinemas/{id}")
-    public ResponseEntity<?> deleteCinema(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> deleteCinema(@PathVariable int id){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.deleteCinema(id));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
@@ -152,16 +132,12 @@ public class AdminController {
     /***
      * This method returns a cinema object with a given id
      * @param id a cinema's id
-     * @param request a client's request
      * @return a cinema object or an error message if something's wrong (the client isn't an admin or the service wasn't able to fetch)
      */
     @GetMapping(path = "/cinemas/{id}")
-    public ResponseEntity<?> getCinemaById(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> getCinemaById(@PathVariable int id){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.getCinemaById(id));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
@@ -169,17 +145,11 @@ public class AdminController {
 
     /***
      * This method returns a list of all the cinemas in the DB
-     * @param request a client's request
      * @return a list of all the cinemas in the DB or an error message if something's wrong (the client isn't an admin)
      */
     @GetMapping(path = "/cinemas")
-    public ResponseEntity<?> getAllCinemas(HttpServletRequest request){
-        try{
-            AdminService adminService = ifAuthorized(request);
-            return ResponseEntity.ok(adminService.getAllCinemas());
-        } catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+    public ResponseEntity<?> getAllCinemas(){
+        return ResponseEntity.ok(adminService.getAllCinemas());
     }
 
     /***
@@ -189,29 +159,20 @@ public class AdminController {
      * something's wrong (the client isn't an admin)
      */
     @GetMapping(path = "/cinemas/city/{city}")
-    public ResponseEntity<?> getCinemasByCity(@PathVariable String city, HttpServletRequest request){
-        try {
-            AdminService adminService = ifAuthorized(request);
-            return ResponseEntity.ok(adminService.getCinemasByCity(city));
-        }catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+    public ResponseEntity<?> getCinemasByCity(@PathVariable String city){
+        return ResponseEntity.ok(adminService.getCinemasByCity(city));
     }
 
     /***
      * This method receives a Screening object and adds it to the DB
      * @param screening a Screening object
-     * @param request a client's request
      * @return a Screening object with an updated id or an error message if something's wrong (the client isn't an admin or
      * the service wasn't able to add)
      */
     @PostMapping(path = "/screenings/add")
-    public ResponseEntity<?> addScreening(@RequestBody Screening screening, HttpServletRequest request){
+    public ResponseEntity<?> addScreening(@RequestBody Screening screening){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.addScreening(screening));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -220,17 +181,13 @@ public class AdminController {
     /***
      * This method receives a Screening object and updates it in the DB
      * @param screening a Screening object
-     * @param request a client's request
      * @return a Screening object with an updated id or an error message if something's wrong (the client isn't an admin or
      * the service was unable to update)
      */
     @PutMapping(path = "/screenings/update")
-    public ResponseEntity<?> updateScreening(@RequestBody Screening screening, HttpServletRequest request){
+    public ResponseEntity<?> updateScreening(@RequestBody Screening screening){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.updateScreening(screening));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (NoSuchScreeningException | InvalidScreeningUpdateException | UnavailableTimeException e) {
             System.out.println(e.getMessage());
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -240,17 +197,13 @@ public class AdminController {
     /***
      * This method receives a screening id and deletes the corresponding object in the DB
      * @param id a screening id
-     * @param request a client's request
      * @return a confirmation of deletion or an error request if something's wrong (the client is not an admin or
      * the service wasn't able to delete)
      */
     @DeleteMapping(path = "/screenings/{id}")
-    public ResponseEntity<?> deleteScreening(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> deleteScreening(@PathVariable int id){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.deleteScreening(id));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
@@ -259,171 +212,160 @@ public class AdminController {
     /***
      * This method returns a Screening object with a given id
      * @param id a screening's id
-     * @param request a client's request
      * @return a Screening object or an error message if something's wrong (the client isn't an admin or the service wasn't able to fetch)
      */
     @GetMapping(path = "/screenings/{id}")
-    public ResponseEntity<?> getScreeningById(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> getScreeningById(@PathVariable int id){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.getScreeningById(id));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
     /***
-     * This method returns a list of all the screenings in the DB
-     * @param request a client's request
-     * @return a list of all the screenings in the DB or an error message if something's wrong (the client isn't an admin)
+     * This method returns a list of all the screenings in the DB, or a page of them ordered by id
+     * @param after the id of the last screening of the previous page, from the X-Next-Cursor header (optional)
+     * @param limit the number of screenings in a page, at most 100 (optional, all the screenings are returned without it)
+     * @return a list of the screenings in the DB or an error message if something's wrong (the client isn't an admin)
      */
     @GetMapping(path = "/screenings")
-    public ResponseEntity<?> getAllScreenings(HttpServletRequest request){
-        try {
-            AdminService adminService = ifAuthorized(request);
+    public ResponseEntity<?> getAllScreenings(@RequestParam(defaultValue = "0") int after, @RequestParam(required = false) Integer limit){
+        if(limit == null)
             return ResponseEntity.ok(adminService.getAllScreenings());
-        }catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+        return Keyset.toResponse(adminService.getScreenings(after, limit), Screening::getId);
     }
 
     /***
      * This method returns a list of screenings whose movie id corresponds to the given one
      * @param id a movie id
-     * @param request a client's request
      * @return a list of screenings whose movie id corresponds to the given one or an error message if something's wrong
      * (the client isn't an admin)
      */
     @GetMapping(path = "/screenings/movie/{id}")
-    public ResponseEntity<?> getAllScreeningsByMovie(int id, HttpServletRequest request){
-        try{
-            AdminService adminService = ifAuthorized(request);
-            return ResponseEntity.ok(adminService.getScreeningsByMovieId(id));
-        }catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+    public ResponseEntity<?> getAllScreeningsByMovie(int id){
+        return ResponseEntity.ok(adminService.getScreeningsByMovieId(id));
     }
 
     /***
      * This method returns a list of screenings whose cinema's city corresponds to the given one
      * @param city a cinema's city
-     * @param request a client's request
      * @return a list of screenings whose cinema's city corresponds to the given one or an error message if something's wrong
      * (the client isn't an admin)
      */
     @GetMapping(path = "/screenings/city/{city}")
-    public ResponseEntity<?> getAllScreeningsByCity(String city, HttpServletRequest request){
-        try{
-            AdminService adminService = ifAuthorized(request);
-            return ResponseEntity.ok(adminService.getScreeningsByCity(city));
-        }catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+    public ResponseEntity<?> getAllScreeningsByCity(String city){
+        return ResponseEntity.ok(adminService.getScreeningsByCity(city));
     }
 
     /***
-     * This method returns a list of screenings whose movie's genre corresponds to the given one
+     * This method returns a list of upcoming screenings whose movie's genre corresponds to the given one
      * @param genre a movie's genre
-     * @param request a client's request
-     * @return a list of screenings whose movie's genre corresponds to the given one or an error message if something's wrong
+     * @param page the page's number, starting from 0 (optional, all the screenings are returned without a size)
+     * @param size the number of screenings in a page (optional)
+     * @return a list of upcoming screenings whose movie's genre corresponds to the given one or an error message if something's wrong
      * (the client isn't an admin)
      */
     @GetMapping(path = "/screenings/genre/{genre}")
-    public ResponseEntity<?> getAllScreeningsByGenre(Genre genre, HttpServletRequest request){
-        try{
-            AdminService adminService = ifAuthorized(request);
-        return ResponseEntity.ok(adminService.getScreeningsByGenre(genre));
-        }catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+    public ResponseEntity<?> getAllScreeningsByGenre(@PathVariable Genre genre, @RequestParam(defaultValue = "0") int page,
+                                                     @RequestParam(required = false) Integer size){
+        if(size == null)
+            return ResponseEntity.ok(adminService.getScreeningsByGenre(genre));
+        return ResponseEntity.ok(adminService.getScreeningsByGenre(genre, page, size));
     }
 
     /***
      * This method receives a screening's id and returns a list of its seats
      * @param id a screening id
-     * @param request a client's request
-     * @return a list of seats or an error message if something's wrong (the client isn't a user)
+     * @param format "compact" for a compact seat map (also returned for the compact seat map's media type in the Accept header)
+     * @return a list of seats, a compact seat map or an error message if something's wrong (the client isn't a user)
      */
     @GetMapping(path = "/screenings/seats/{id}")
-    public ResponseEntity<?> getSeatsOfScreening(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> getSeatsOfScreening(@PathVariable int id, @RequestParam(required = false) String format,
+                                                 @RequestHeader(value = "Accept", required = false) String accept){
         try{
-            AdminService adminService = ifAuthorized(request);
+            if(CompactSeatMap.isRequested(format, accept))
+                return ResponseEntity.ok(adminService.getCompactSeatsOfScreening(id));
             return  ResponseEntity.ok(adminService.getSeatsOfScreening(id));
-        } catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (NoSuchScreeningException | ScreeningWasScreenedException e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
     /***
-     * This method returns a list of all the users in the DB
-     * @param request a client's request
-     * @return a list of all the users in the DB or an error message if something's wrong (the client isn't an admin)
+     * This method returns a page of the users in the DB, ordered by id.
+     * The cursor of the next page is in the X-Next-Cursor header, which is missing on the last page.
+     * @param after the id of the last user of the previous page, from the X-Next-Cursor header (optional)
+     * @param limit the number of users in a page, at most 100
+     * @return a page of the users in the DB or an error message if something's wrong (the client isn't an admin)
      */
     @GetMapping(path = "/users")
-    public ResponseEntity<?> getAllUsers(HttpServletRequest request){
-        try{
-            AdminService adminService = ifAuthorized(request);
-            return  ResponseEntity.ok(adminService.getAllUsers());
-        }catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+    public ResponseEntity<?> getAllUsers(@RequestParam(defaultValue = "0") int after, @RequestParam(defaultValue = "100") int limit){
+        return Keyset.toResponse(adminService.getUsers(after, limit), User::getId);
+    }
+
+    /***
+     * This method exports all the users, streamed to the response as they are read from the DB
+     * @param format NDJSON for a JSON object per line or CSV (optional, NDJSON by default)
+     * @param response the response the export is written to, as an attachment
+     * @throws IOException if the export can't be written
+     */
+    @GetMapping(path = "/users/export")
+    public void exportUsers(@RequestParam(defaultValue = "NDJSON") ExportFormat format, HttpServletResponse response) throws IOException {
+        startExport(response, format, "users");
+        adminService.exportUsers(format, response.getOutputStream());
     }
 
     /***
      * This method returns a User object with a given id
      * @param id a user's id
-     * @param request a client's request
      * @return a User object or an error message if something's wrong (the client isn't an admin or the service wasn't able to fetch)
      */
     @GetMapping(path = "/users/{id}")
-    public ResponseEntity<?> getUserById(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> getUserById(@PathVariable int id){
         try {
-            AdminService adminService = ifAuthorized(request);
             return ResponseEntity.ok(adminService.getUserById(id));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
     /***
-     * This method returns a list of all the orders in the DB
-     * @param request a client's request
-     * @return a list of all the orders in the DB or an error message if something's wrong (the client isn't an admin)
+     * This method returns a page of the orders in the DB, ordered by id.
+     * The cursor of the next page is in the X-Next-Cursor header, which is missing on the last page.
+     * @param after the id of the last order of the previous page, from the X-Next-Cursor header (optional)
+     * @param limit the number of orders in a page, at most 100
+     * @return a page of the orders in the DB or an error message if something's wrong (the client isn't an admin)
      */
     @GetMapping(path = "/orders")
-    public ResponseEntity<?> getAllOrders(HttpServletRequest request){
-        try{
-            AdminService adminService = ifAuthorized(request);
-            return  ResponseEntity.ok(adminService.getAllOrders());
-        }catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+    public ResponseEntity<?> getAllOrders(@RequestParam(defaultValue = "0") int after, @RequestParam(defaultValue = "100") int limit){
+        return Keyset.toResponse(adminService.getOrders(after, limit), Order::getId);
     }
 
     /***
-     * This method checks if the token's type is admin and if there's an active session for it
-     * @param request a client's request
-     * @return an AdminService object
-     * @throws UnauthorizedException if the token's type is user or if there's no active session for it
+     * This method exports all the orders with their users, screenings and seats, streamed to the response as they are read from the DB
+     * @param format NDJSON for a JSON object per line or CSV (optional, NDJSON by default)
+     * @param response the response the export is written to, as an attachment
+     * @throws IOException if the export can't be written
      */
-    private AdminService ifAuthorized(HttpServletRequest request) throws UnauthorizedException {
-        Object type = request.getAttribute("type");
-        if(type != null && !(type.toString().equals("ADMINISTRATOR"))) {
-            throw new UnauthorizedException();
-        }
-        try {
-            String token = request.getHeader("authorization").replace("Bearer ", "");
-            MySession session = sessions.get(token);
-            session.setLastActive(System.currentTimeMillis());
-            return (AdminService) session.getService();
-        }catch (Exception e){
-            throw new UnauthorizedException();
-        }
+    @GetMapping(path = "/orders/export")
+    public void exportOrders(@RequestParam(defaultValue = "NDJSON") ExportFormat format, HttpServletResponse response) throws IOException {
+        startExport(response, format, "orders");
+        adminService.exportOrders(format, response.getOutputStream());
+    }
+
+    /***
+     * This method returns the server's runtime metrics (sessions, expiry queue, holds)
+     * @return a map of metric names to values or an error message if something's wrong (the client isn't an admin)
+     */
+    @GetMapping(path = "/metrics")
+    public ResponseEntity<?> getMetrics(){
+        return ResponseEntity.ok(metricsService.getMetrics());
+    }
+
+    private static void startExport(HttpServletResponse response, ExportFormat format, String name){
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + name + "." + format.getExtension() + "\"");
     }
 }
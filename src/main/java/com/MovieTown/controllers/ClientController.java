@@ -5,29 +5,58 @@ import com.MovieTown.exceptions.*;
 import com.MovieTown.services.*;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
-import org.springframework.context.ApplicationContext;
+import com.MovieTown.utils.SessionExpiry;
+import com.MovieTown.utils.SessionStore;
+import com.MovieTown.utils.TokenHash;
+import com.MovieTown.utils.TokenRevocations;
+import com.MovieTown.utils.Keyset;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 
 //Controller for clients who are not logged in
 @RestController
 @RequestMapping("/client")
 public class ClientController {
-    private HashMap<String, MySession> sessions;
+    private SessionStore sessions;
+    private SessionExpiry sessionExpiry;
 
     private ClientService clientService;
-    private final ApplicationContext applicationContext;
+    private UserService userService;
+    private AdminService adminService;
+    private Algorithm jwtAlgorithm;
+    private TokenRevocations revocations;
+    private ImageStore imageStore;
+    private ImageVariants imageVariants;
+    private long tokenLifetime;
 
-    public ClientController(ClientService clientService, HashMap<String, MySession> sessions, ApplicationContext applicationContext) {
+    public ClientController(ClientService clientService, UserService userService, AdminService adminService, SessionStore sessions,
+                            SessionExpiry sessionExpiry, Algorithm jwtAlgorithm, TokenRevocations revocations, ImageStore imageStore,
+                            ImageVariants imageVariants,
+                            @Value("${movietown.jwt.minutes:1440}") long tokenMinutes) {
         this.clientService = clientService;
+        this.userService = userService;
+        this.adminService = adminService;
         this.sessions = sessions;
-        this.applicationContext = applicationContext;
+        this.sessionExpiry = sessionExpiry;
+        this.jwtAlgorithm = jwtAlgorithm;
+        this.revocations = revocations;
+        this.imageStore = imageStore;
+        this.imageVariants = imageVariants;
+        this.tokenLifetime = tokenMinutes * 60 * 1000;
     }
 
     /***
@@ -43,9 +72,7 @@ public class ClientController {
             user = clientService.register(user);
             System.out.println(user);
             String token = createNewUserToken(user);
-            UserService userService = applicationContext.getBean(UserService.class).login(user.getEmail(), user.getPassword());
-            System.out.println(userService.getUserId());
-            sessions.put(token, new MySession(userService, System.currentTimeMillis()));
+            sessionExpiry.add(TokenHash.of(token), new MySession(user.getId(), Role.USER, System.currentTimeMillis()));
             return ResponseEntity.ok(token);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -63,14 +90,14 @@ public class ClientController {
     @PostMapping(path = "/login")
     public ResponseEntity<String> login(@RequestParam String email, @RequestParam String password){
         try {
-            Registered registeredService = applicationContext.getBean(AdminService.class).login(email, password);
-            if(registeredService == null){
-                registeredService = applicationContext.getBean(UserService.class).login(email, password);
-                if(registeredService == null)
+            MySession session = adminService.login(email, password);
+            if(session == null){
+                session = userService.login(email, password);
+                if(session == null)
                     throw new LoginException();
             }
-            String token = createToken(registeredService);
-            sessions.put(token, new MySession(registeredService, System.currentTimeMillis()));
+            String token = createToken(session);
+            sessionExpiry.add(TokenHash.of(token), session);
             return ResponseEntity.ok(token);
         } catch (Exception e) {
             return ResponseEntity.status(401).body(e.getMessage());
@@ -79,28 +106,30 @@ public class ClientController {
 
     /***
      * This method logs out the user, while removing its active token from the session.
-     * @param request a client's request
-     * @return String which indicates that the user has signed out or an error message if something's wrong
-     * (deletion from the session failed)
+     * The token is also revoked, so it's rejected by the token filter until it expires.
+     * @param principal the authenticated client
+     * @return String which indicates that the user has signed out
      */
     @PostMapping(path = "/out")
-    public ResponseEntity<String> signOut(HttpServletRequest request){
-        try {
-            String token = request.getHeader("authorization").replace("Bearer ", "");
-            sessions.remove(token);
-            return ResponseEntity.ok("signed out");
-        }catch (NullPointerException e){
-            return ResponseEntity.status(404).body(e.getMessage());
-        }
+    public ResponseEntity<String> signOut(ClientPrincipal principal){
+        sessions.remove(principal.getTokenHash());
+        //Tokens from before tokens had an expiry time are revoked for a token's lifetime
+        long expiresAt = principal.getExpiresAt() == Long.MAX_VALUE ? System.currentTimeMillis() + tokenLifetime : principal.getExpiresAt();
+        revocations.revoke(principal.getToken(), expiresAt);
+        return ResponseEntity.ok("signed out");
     }
 
     /***
-     * This method returns a list of all the movies in the DB
-     * @return a list of all the movies in the DB
+     * This method returns a list of all the movies in the DB, or a page of them ordered by id
+     * @param after the id of the last movie of the previous page, from the X-Next-Cursor header (optional)
+     * @param limit the number of movies in a page, at most 100 (optional, all the movies are returned without it)
+     * @return a list of the movies in the DB
      */
     @GetMapping(path = "/movies")
-    public List<Movie> getAllMovies(){
-            return clientService.getAllMovies();
+    public ResponseEntity<List<Movie>> getAllMovies(@RequestParam(defaultValue = "0") int after, @RequestParam(required = false) Integer limit){
+        if(limit == null)
+            return ResponseEntity.ok(clientService.getAllMovies());
+        return Keyset.toResponse(clientService.getMovies(after, limit), Movie::getId);
     }
 
     /***
@@ -117,6 +146,106 @@ public class ClientController {
         }
     }
 
+    /***
+     * This method streams a movie's poster from the image store.
+     * The file is sent with sendfile when the server supports it, and otherwise with FileChannel.transferTo.
+     * A poster's file is never changed once it's written, so the server can open it again by its path after the headers were sent.
+     * A poster requested by its current versioned url is cached by clients for a year,
+     * and it can be revalidated with its ETag or fetched in parts with a single byte range.
+     * A resized variant of the poster is sent if it was made already, and otherwise the poster itself is sent without being cached.
+     * @param id a movie's id
+     * @param version the poster's version from its url (optional)
+     * @param size the size of the poster's variant (optional, the whole poster is sent without it)
+     * @return the poster, 304 if the client's copy is current, 206 for a byte range or 404 if the movie has no poster
+     * @throws IOException if the poster can't be sent
+     */
+    @GetMapping(path = "/movies/{id}/image")
+    public void getMovieImage(@PathVariable int id, @RequestParam(name = "v", required = false) String version,
+                              @RequestParam(required = false) ImageSize size,
+                              @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+                              @RequestHeader(value = "Range", required = false) String range,
+                              @RequestHeader(value = "If-Range", required = false) String ifRange,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Long current;
+        try {
+            current = clientService.getMovieById(id).getImageVersion();
+        } catch (NoSuchMovieException e) {
+            current = null;
+        }
+        if(current == null){
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "The movie has no image");
+            return;
+        }
+        Path file = size == null ? null : imageVariants.get(id, current, size);
+        FileChannel opened = file == null ? null : open(file);
+        //Until the variant is made, or if it was evicted after it was found, its url gets the whole poster, which mustn't be
+        //cached as the variant. An old version's url gets the current poster, which mustn't be cached as the old version.
+        boolean variant = opened != null;
+        if(!variant){
+            file = imageStore.getPath(id, current);
+            opened = open(file);
+        }
+        if(opened == null){
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "The movie has no image");
+            return;
+        }
+        boolean immutable = Long.toHexString(current).equals(version) && (size == null || variant);
+        //The poster's version is a hash of its content, so the same poster always has the same ETag
+        String eTag = "\"" + Long.toHexString(current) + (variant ? "-" + size.name().toLowerCase() : "") + "\"";
+        try(FileChannel channel = opened){
+            long length = channel.size();
+            response.setHeader("ETag", eTag);
+            response.setHeader("Cache-Control", immutable ? "public, max-age=31536000, immutable" : "public, no-cache");
+            response.setHeader("Accept-Ranges", "bytes");
+            if(ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.contains(eTag))){
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            long start = 0, end = length;
+            //A range of an older version of the poster is ignored and the whole poster is sent
+            if(range != null && (ifRange == null || ifRange.equals(eTag))){
+                long[] bounds = parseRange(range, length);
+                if(bounds != null && bounds.length == 0){
+                    response.setHeader("Content-Range", "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                if(bounds != null){
+                    start = bounds[0];
+                    end = bounds[1];
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + length);
+                }
+            }
+            response.setContentType(ImageStore.contentType(channel));
+            response.setContentLengthLong(end - start);
+            if(request.getMethod().equals("HEAD"))
+                return;
+            if(Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))){
+                request.setAttribute("org.apache.tomcat.sendfile.filename", file.toAbsolutePath().toString());
+                request.setAttribute("org.apache.tomcat.sendfile.start", start);
+                request.setAttribute("org.apache.tomcat.sendfile.end", end);
+                return;
+            }
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            while(start < end){
+                long sent = channel.transferTo(start, end - start, out);
+                if(sent <= 0)
+                    break;
+                start += sent;
+            }
+        }
+    }
+
+    //Opens a file for reading, or returns null if it doesn't exist
+    private static FileChannel open(Path file) throws IOException {
+        try {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
     /***
      * This method returns a list of movies that have screenings in the given city
      * @param city a string representing a city in which there are screenings
@@ -129,12 +258,16 @@ public class ClientController {
     }
 
     /***
-     * This method returns a list of all the screenings in the DB
-     * @return a list of all the screenings in the DB
+     * This method returns a list of all the screenings in the DB, or a page of them ordered by id
+     * @param after the id of the last screening of the previous page, from the X-Next-Cursor header (optional)
+     * @param limit the number of screenings in a page, at most 100 (optional, all the screenings are returned without it)
+     * @return a list of the screenings in the DB
      */
     @GetMapping(path = "/screenings")
-    public List<Screening> getAllScreenings(){
-        return clientService.getAllScreenings();
+    public ResponseEntity<List<Screening>> getAllScreenings(@RequestParam(defaultValue = "0") int after, @RequestParam(required = false) Integer limit){
+        if(limit == null)
+            return ResponseEntity.ok(clientService.getAllScreenings());
+        return Keyset.toResponse(clientService.getScreenings(after, limit), Screening::getId);
     }
 
     /***
@@ -172,24 +305,33 @@ public class ClientController {
     }
 
     /***
-     * This method returns a list of screenings whose movie's genre corresponds to the given one
+     * This method returns a list of upcoming screenings whose movie's genre corresponds to the given one
      * @param genre a movie's genre
-     * @return a list of screenings whose movie's genre corresponds to the given one
+     * @param page the page's number, starting from 0 (optional, all the screenings are returned without a size)
+     * @param size the number of screenings in a page (optional)
+     * @return a list of upcoming screenings whose movie's genre corresponds to the given one
      */
     @GetMapping(path = "/screenings/genre/{genre}")
-    public List<Screening> getScreeningsByGenre(@PathVariable Genre genre){
-        return clientService.getScreeningsByGenre(genre);
+    public List<Screening> getScreeningsByGenre(@PathVariable Genre genre, @RequestParam(defaultValue = "0") int page,
+                                                @RequestParam(required = false) Integer size){
+        if(size == null)
+            return clientService.getScreeningsByGenre(genre);
+        return clientService.getScreeningsByGenre(genre, page, size);
     }
 
     /***
      * This method receives a screening's id and returns a list of its seats
      * @param id a screening id
      * @param request a client's request
-     * @return a list of seats or an error message if something's wrong (the client isn't a user)
+     * @param format "compact" for a compact seat map (also returned for the compact seat map's media type in the Accept header)
+     * @return a list of seats, a compact seat map or an error message if something's wrong (the client isn't a user)
      */
     @GetMapping(path = "/screenings/seats/{id}")
-    public ResponseEntity<?> getSeatsOfScreening(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> getSeatsOfScreening(@PathVariable int id, @RequestParam(required = false) String format,
+                                                 @RequestHeader(value = "Accept", required = false) String accept, HttpServletRequest request){
         try{
+            if(CompactSeatMap.isRequested(format, accept))
+                return ResponseEntity.ok(clientService.getCompactSeatsOfScreening(id));
             return  ResponseEntity.ok(clientService.getSeatsOfScreening(id));
         } catch (NoSuchScreeningException | ScreeningWasScreenedException e) {
             return ResponseEntity.status(404).body(e.getMessage());
@@ -197,25 +339,71 @@ public class ClientController {
     }
 
     /***
-     * This method receives a Registered interface and returns a token according to its type
-     * @param registeredService a Registered interface
-     * @return a token according to its type (AdminService returns an admin token, UserService a user's token)
-     * @throws NoSuchUserException if the service is a UserService and there's no user with the service's id
+     * This method receives a screening's id and a number of seats and returns the best free adjacent seats
+     * @param id a screening id
+     * @param count the number of seats
+     * @return a list of adjacent seats in one row or an error message if something's wrong (no such screening or no free seats)
+     */
+    @GetMapping(path = "/screenings/seats/{id}/best")
+    public ResponseEntity<?> getBestSeats(@PathVariable int id, @RequestParam int count){
+        try{
+            return ResponseEntity.ok(clientService.getBestSeats(id, count));
+        } catch (NoSuchScreeningException | ScreeningWasScreenedException | NoAvailableSeatsException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
+        }
+    }
+
+    /***
+     * This method parses a Range header with a single byte range
+     * @param range the Range header
+     * @param length the file's length
+     * @return the range's start and exclusive end, an empty array if the range is unsatisfiable,
+     * or null if the header isn't a single byte range and the whole file should be sent
+     */
+    static long[] parseRange(String range, long length){
+        if(!range.startsWith("bytes=") || range.indexOf(',') >= 0)
+            return null;
+        int dash = range.indexOf('-');
+        if(dash < 0)
+            return null;
+        try {
+            String first = range.substring(6, dash).trim(), last = range.substring(dash + 1).trim();
+            if(first.isEmpty()){
+                //A suffix range: the last bytes of the file
+                long suffix = Long.parseLong(last);
+                return suffix <= 0 || length == 0 ? new long[0] : new long[]{Math.max(length - suffix, 0), length};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length : Math.min(Long.parseLong(last) + 1, length);
+            if(start >= length || end <= start)
+                return new long[0];
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /***
+     * This method receives a session and returns a token according to its role
+     * @param session a logged in client's session
+     * @return a token according to its role (an admin token or a user's token)
+     * @throws NoSuchUserException if the session is a user's and there's no user with the session's id
      */
-    private String createToken(Registered registeredService) throws NoSuchUserException {
+    private String createToken(MySession session) throws NoSuchUserException {
         String token = "";
-        if (registeredService instanceof UserService) {
-            User user = ((UserService) registeredService).getDetails();
+        if (session.getRole() == Role.USER) {
+            User user = userService.getDetails(session.getUserId());
             token = createNewUserToken(user);
         }
         else {
             token = JWT.create()
                     .withIssuer("Movie Town")
                     .withIssuedAt(new Date())
+                    .withExpiresAt(new Date(System.currentTimeMillis() + tokenLifetime))
                     .withClaim("name", "admin")
                     .withClaim("email", "admin@admin.com")
                     .withClaim("type", "ADMINISTRATOR")
-                    .sign(Algorithm.HMAC256("The town of all movies"));
+                    .sign(jwtAlgorithm);
         }
         return token;
     }
@@ -229,10 +417,11 @@ public class ClientController {
         return JWT.create()
                 .withIssuer("Movie Town")
                 .withIssuedAt(new Date())
+                .withExpiresAt(new Date(System.currentTimeMillis() + tokenLifetime))
                 .withClaim("id", user.getId())
                 .withClaim("name", user.getName())
                 .withClaim("email", user.getEmail())
                 .withClaim("type", "USER")
-                .sign(Algorithm.HMAC256("The town of all movies"));
+                .sign(jwtAlgorithm);
     }
 }
@@ -3,40 +3,37 @@ package com.MovieTown.controllers;
 
 import com.MovieTown.beans.*;
 import com.MovieTown.exceptions.*;
-import com.MovieTown.services.AdminService;
+import com.MovieTown.filters.RequiresRole;
 import com.MovieTown.services.UserService;
+import com.MovieTown.utils.Keyset;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import javax.servlet.http.HttpServletRequest;
-import java.util.HashMap;
 import java.util.List;
 
 @RestController
 @RequestMapping(path = "/user")
+@RequiresRole(Role.USER)
 public class UserController {
 
-    private HashMap<String, MySession> sessions;
+    private UserService userService;
 
-    public UserController(HashMap<String, MySession> sessions) {
-        this.sessions = sessions;
+    public UserController(UserService userService) {
+        this.userService = userService;
     }
 
     /***
-     * This method receives a User object and updates it in the DB
+     * This method receives a User object and updates the authenticated user with it in the DB
      * @param user a User object
-     * @param request a client's request
+     * @param principal the authenticated user
      * @return a User object or an error request if something's wrong (the client is not a user or the service wasn't
      * able to update
      */
     @PutMapping
-    public ResponseEntity<?> updateUser(@RequestBody User user, HttpServletRequest request){
+    public ResponseEntity<?> updateUser(@RequestBody User user, ClientPrincipal principal){
         try {
-            UserService userService= ifAuthorized(request);
-            return ResponseEntity.ok(userService.updateUser(user));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
+            return ResponseEntity.ok(userService.updateUser(principal.getUserId(), user));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -44,133 +41,105 @@ public class UserController {
 
     /***
      * This method returns a User object with details corresponding to the one in the DB with the service's id
-     * @param request a client's request
+     * @param principal the authenticated user
      * @return a User object or an error message if something's wrong (the client isn't a user or the service wasn't able to fetch)
      */
     @GetMapping(path = "/details")
-    public ResponseEntity<?> getDetails(HttpServletRequest request){
+    public ResponseEntity<?> getDetails(ClientPrincipal principal){
         try {
-            UserService userService= ifAuthorized(request);
-            return ResponseEntity.ok(userService.getDetails());
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
+            return ResponseEntity.ok(userService.getDetails(principal.getUserId()));
         } catch (NoSuchUserException e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
     /***
-     * This method returns a list of all the movies in the DB
-     * @param request a client's request
-     * @return a list of all the movies in the DB or an error message if something's wrong (the client isn't a user)
+     * This method returns a list of all the movies in the DB, or a page of them ordered by id
+     * @param after the id of the last movie of the previous page, from the X-Next-Cursor header (optional)
+     * @param limit the number of movies in a page, at most 100 (optional, all the movies are returned without it)
+     * @return a list of the movies in the DB or an error message if something's wrong (the client isn't a user)
      */
     @GetMapping(path = "/movies")
-    public ResponseEntity<?> getAllMovies(HttpServletRequest request){
-        try {
-            UserService userService = ifAuthorized(request);
+    public ResponseEntity<?> getAllMovies(@RequestParam(defaultValue = "0") int after, @RequestParam(required = false) Integer limit){
+        if(limit == null)
             return ResponseEntity.ok(userService.getAllMovies());
-        } catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+        return Keyset.toResponse(userService.getMovies(after, limit), Movie::getId);
     }
 
     /***
      * This method returns a movie object with a given id
      * @param id a movie's id
-     * @param request a client's request
      * @return a movie object or an error message if something's wrong (the client isn't a user or the service wasn't able to fetch)
      */
     @GetMapping(path = "/movies/{id}")
-    public ResponseEntity<?> getMovieById(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> getMovieById(@PathVariable int id){
         try {
-            UserService userService= ifAuthorized(request);
             return ResponseEntity.ok(userService.getMovieById(id));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (NoSuchMovieException e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
     /***
-     * This method returns a list of all the screenings in the DB
-     * @param request a client's request
-     * @return a list of all the screenings in the DB or an error message if something's wrong (the client isn't a user)
+     * This method returns a list of all the screenings in the DB, or a page of them ordered by id
+     * @param after the id of the last screening of the previous page, from the X-Next-Cursor header (optional)
+     * @param limit the number of screenings in a page, at most 100 (optional, all the screenings are returned without it)
+     * @return a list of the screenings in the DB or an error message if something's wrong (the client isn't a user)
      */
     @GetMapping(path = "/screenings")
-    public ResponseEntity<?> getAllScreenings(HttpServletRequest request){
-        try {
-            UserService userService = ifAuthorized(request);
+    public ResponseEntity<?> getAllScreenings(@RequestParam(defaultValue = "0") int after, @RequestParam(required = false) Integer limit){
+        if(limit == null)
             return ResponseEntity.ok(userService.getAllScreenings());
-        } catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+        return Keyset.toResponse(userService.getScreenings(after, limit), Screening::getId);
     }
 
     /***
      * This method returns a list of screenings whose movie id corresponds to the given one
      * @param id a movie id
-     * @param request a client's request
      * @return a list of screenings whose movie id corresponds to the given one or an error message if something's wrong
      * (the client isn't a user)
      */
     @GetMapping(path = "/screenings/movie/{id}")
-    public ResponseEntity<?> getAllScreeningsByMovie(@PathVariable int id, HttpServletRequest request){
-        try{
-            UserService userService= ifAuthorized(request);
-            return ResponseEntity.ok(userService.getScreeningsByMovieId(id));
-        } catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+    public ResponseEntity<?> getAllScreeningsByMovie(@PathVariable int id){
+        return ResponseEntity.ok(userService.getScreeningsByMovieId(id));
     }
 
     /***
      * This method returns a list of screenings whose cinema's city corresponds to the given one
      * @param city a cinema's city
-     * @param request a client's request
      * @return a list of screenings whose cinema's city corresponds to the given one or an error message if something's wrong
      * (the client isn't a user)
      */
     @GetMapping(path = "/screenings/city/{city}")
-    public ResponseEntity<?> getAllScreeningsByCity(@PathVariable String city, HttpServletRequest request){
-        try{
-            UserService userService= ifAuthorized(request);
-            return  ResponseEntity.ok(userService.getScreeningsByCity(city));
-        } catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+    public ResponseEntity<?> getAllScreeningsByCity(@PathVariable String city){
+        return  ResponseEntity.ok(userService.getScreeningsByCity(city));
     }
 
     /***
-     * This method returns a list of screenings whose movie's genre corresponds to the given one
+     * This method returns a list of upcoming screenings whose movie's genre corresponds to the given one
      * @param genre a movie's genre
-     * @param request a client's request
-     * @return a list of screenings whose movie's genre corresponds to the given one or an error message if something's wrong
+     * @param page the page's number, starting from 0 (optional, all the screenings are returned without a size)
+     * @param size the number of screenings in a page (optional)
+     * @return a list of upcoming screenings whose movie's genre corresponds to the given one or an error message if something's wrong
      * (the client isn't a user)
      */
     @GetMapping(path = "/screenings/genre/{genre}")
-    public ResponseEntity<?> getAllScreeningsByGenre(@PathVariable Genre genre, HttpServletRequest request){
-        try{
-            UserService userService= ifAuthorized(request);
+    public ResponseEntity<?> getAllScreeningsByGenre(@PathVariable Genre genre, @RequestParam(defaultValue = "0") int page,
+                                                     @RequestParam(required = false) Integer size){
+        if(size == null)
             return ResponseEntity.ok(userService.getScreeningsByGenre(genre));
-        } catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        }
+        return ResponseEntity.ok(userService.getScreeningsByGenre(genre, page, size));
     }
 
     /***
      * This method returns a Screening object with a given id
      * @param id a screening's id
-     * @param request a client's request
      * @return a Screening object or an error message if something's wrong (the client isn't a user or the service wasn't able to fetch)
      */
     @GetMapping(path = "/screenings/{id}")
-    public ResponseEntity<?> getScreeningById(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> getScreeningById(@PathVariable int id){
         try {
-            UserService userService= ifAuthorized(request);
             return ResponseEntity.ok(userService.getScreeningById(id));
-        }catch (UnauthorizedException e){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (NoSuchScreeningException e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
@@ -179,48 +148,80 @@ public class UserController {
     /***
      * This method receives a screening's id and returns a list of its seats
      * @param id a screening id
-     * @param request a client's request
-     * @return a list of seats or an error message if something's wrong (the client isn't a user)
+     * @param format "compact" for a compact seat map (also returned for the compact seat map's media type in the Accept header)
+     * @return a list of seats, a compact seat map or an error message if something's wrong (the client isn't a user)
      */
     @GetMapping(path = "/screenings/seats/{id}")
-    public ResponseEntity<?> getSeatsOfScreening(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> getSeatsOfScreening(@PathVariable int id, @RequestParam(required = false) String format,
+                                                 @RequestHeader(value = "Accept", required = false) String accept){
         try{
-        UserService userService= ifAuthorized(request);
+        if(CompactSeatMap.isRequested(format, accept))
+            return ResponseEntity.ok(userService.getCompactSeatsOfScreening(id));
         return  ResponseEntity.ok(userService.getSeatsOfScreening(id));
-        } catch (UnauthorizedException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (NoSuchScreeningException | ScreeningWasScreenedException e) {
             return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
     /***
-     * This method returns a list of orders of the service's user
-     * @param request a client' request
-     * @return a list of the user's orders or an error message if something's wrong (the client isn't a user)
+     * This method receives a screening's id and a number of seats and returns the best free adjacent seats
+     * @param id a screening id
+     * @param count the number of seats
+     * @return a list of adjacent seats in one row or an error message if something's wrong (the client isn't a user or
+     * there are no free seats)
      */
-    @GetMapping(path = "/orders")
-    public ResponseEntity<?> getOrders(HttpServletRequest request){
+    @GetMapping(path = "/screenings/seats/{id}/best")
+    public ResponseEntity<?> getBestSeats(@PathVariable int id, @RequestParam int count){
         try{
-            UserService userService= ifAuthorized(request);
-            return ResponseEntity.ok(userService.getUserOrders());
-        }catch (UnauthorizedException e){
-           return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
+            return ResponseEntity.ok(userService.getBestSeats(id, count));
+        } catch (NoSuchScreeningException | ScreeningWasScreenedException | NoAvailableSeatsException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
+    /***
+     * This method receives a screening's id and a number of seats, and orders the best free adjacent seats for the user
+     * @param id a screening id
+     * @param count the number of seats
+     * @param principal the authenticated user
+     * @return an Order object or an error message if something's wrong (the client isn't a user or there are no free seats)
+     */
+    @PostMapping(path = "/screenings/seats/{id}/best")
+    public ResponseEntity<?> addBestOrder(@PathVariable int id, @RequestParam int count, ClientPrincipal principal){
+        try{
+            return ResponseEntity.ok(userService.addBestOrder(principal.getUserId(), id, count));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /***
+     * This method returns a list of orders of the service's user, or a page of them ordered by id
+     * @param principal the authenticated user
+     * @param after the id of the last order of the previous page, from the X-Next-Cursor header (optional)
+     * @param limit the number of orders in a page, at most 100 (optional, all the orders are returned without it)
+     * @return a list of the user's orders or an error message if something's wrong (the client isn't a user)
+     */
+    @GetMapping(path = "/orders")
+    public ResponseEntity<?> getOrders(ClientPrincipal principal, @RequestParam(defaultValue = "0") int after,
+                                       @RequestParam(required = false) Integer limit){
+        if(limit == null)
+            return ResponseEntity.ok(userService.getUserOrders(principal.getUserId()));
+        return Keyset.toResponse(userService.getUserOrders(principal.getUserId(), after, limit), Order::getId);
+    }
+
     /***
      * This method returns an order object with a given id
      * @param id an order's id
-     * @param request a client's request
-     * @return an order object or an error message if something's wrong (the client isn't a user or the service wasn't able to fetch)
+     * @param principal the authenticated user
+     * @return an order object or an error message if something's wrong (the client isn't a user, the order is another user's
+     * or the service wasn't able to fetch)
      */
     @GetMapping(path = "/orders/{id}")
-    public ResponseEntity<?> getOrderById(@PathVariable int id, HttpServletRequest request){
+    public ResponseEntity<?> getOrderById(@PathVariable int id, ClientPrincipal principal){
         try {
-            UserService userService= ifAuthorized(request);
-            return ResponseEntity.ok(userService.getOrderById(id));
-        }catch (UnauthorizedException e){
+            return ResponseEntity.ok(userService.getOrderById(principal.getUserId(), id));
+        } catch (UnauthorizedException e){
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (NoSuchOrderException e) {
             return ResponseEntity.status(404).body(e.getMessage());
@@ -230,57 +231,83 @@ public class UserController {
     /***
      * This method receives a list of seats' ids and add an order to the DB with those seats
      * @param seats a list of seats
-     * @param request a client's request
+     * @param principal the authenticated user
      * @return an Order object or an error message if something's wrong (the client isn't a user or the service wasn't able to add)
      */
     @PostMapping(path = "/orders")
-    public ResponseEntity<?> addOrder(@RequestBody List<Seat> seats, HttpServletRequest request){
+    public ResponseEntity<?> addOrder(@RequestBody List<Seat> seats, ClientPrincipal principal){
+        try {
+            return ResponseEntity.ok(userService.addOrder(principal.getUserId(), seats));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /***
+     * This method receives a list of seats and holds them for the user until the hold is confirmed or expires
+     * @param seats a list of seats
+     * @param principal the authenticated user
+     * @return a SeatHold object or an error message if something's wrong (the client isn't a user or the seats can't be held)
+     */
+    @PostMapping(path = "/holds")
+    public ResponseEntity<?> holdSeats(@RequestBody List<Seat> seats, ClientPrincipal principal){
         try {
-            UserService userService= ifAuthorized(request);
-            return ResponseEntity.ok(userService.addOrder(seats));
+            return ResponseEntity.ok(userService.holdSeats(principal.getUserId(), seats));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /***
+     * This method receives a hold's id and turns the hold into an order
+     * @param id a hold's id
+     * @param principal the authenticated user
+     * @return an Order object or an error message if something's wrong (the client isn't a user or the hold has expired)
+     */
+    @PostMapping(path = "/holds/{id}")
+    public ResponseEntity<?> confirmHold(@PathVariable String id, ClientPrincipal principal){
+        try {
+            return ResponseEntity.ok(userService.confirmHold(principal.getUserId(), id));
         }catch (UnauthorizedException e){
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
+        } catch (NoSuchHoldException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
     /***
-     * This method receives an order's id and cancel it in the DB
-     * @param id an order's id
-     * @param request a client's request
-     * @return a confirmation of cancellation or an error message if something's wrong (the client isn't a user or the service wasn't able to cancel)
+     * This method receives a hold's id and releases its seats
+     * @param id a hold's id
+     * @param principal the authenticated user
+     * @return a confirmation of release or an error message if something's wrong (the client isn't a user or the hold has expired)
      */
-    @DeleteMapping(path = "/{id}")
-    public ResponseEntity<String> cancelOrder(@PathVariable int id, HttpServletRequest request){
+    @DeleteMapping(path = "/holds/{id}")
+    public ResponseEntity<String> releaseHold(@PathVariable String id, ClientPrincipal principal){
         try {
-            UserService userService= ifAuthorized(request);
-            return ResponseEntity.ok(userService.cancelOrder(id));
+            return ResponseEntity.ok(userService.releaseHold(principal.getUserId(), id));
         }catch (UnauthorizedException e){
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
-        } catch (NoSuchOrderException | OrderCancellationException e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (NoSuchHoldException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
         }
     }
 
     /***
-     * This method checks if the token's type is user and if there's an active session for it
-     * @param request a client's request
-     * @return a UserService object
-     * @throws UnauthorizedException if the token's type is admin or if there's no active session for it
+     * This method receives an order's id and cancel it in the DB
+     * @param id an order's id
+     * @param principal the authenticated user
+     * @return a confirmation of cancellation or an error message if something's wrong (the client isn't a user or the service wasn't able to cancel)
      */
-    private UserService ifAuthorized(HttpServletRequest request) throws UnauthorizedException {
+    @DeleteMapping(path = "/{id}")
+    public ResponseEntity<String> cancelOrder(@PathVariable int id, ClientPrincipal principal){
         try {
-            String type = request.getAttribute("type").toString();
-            if(!type.equals("USER")) {
-                throw new UnauthorizedException();
-            }
-            String token = request.getHeader("authorization").replace("Bearer ", "");
-            MySession session = sessions.get(token);
-            session.setLastActive(System.currentTimeMillis());
-            return (UserService) session.getService();
-        }catch (Exception e){
-            throw new UnauthorizedException();
+            return ResponseEntity.ok(userService.cancelOrder(principal.getUserId(), id));
+        }catch (UnauthorizedException e){
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
+        } catch (NoSuchOrderException | OrderCancellationException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 }
@@ -0,0 +1,7 @@
+package com.MovieTown.exceptions;
+
+public class NoAvailableSeatsException extends Exception{
+    public NoAvailableSeatsException() {
+        super("There are no available adjacent seats for that number of tickets");
+    }
+}
@@ -0,0 +1,7 @@
+package com.MovieTown.exceptions;
+
+public class NoSuchHoldException extends Exception{
+    public NoSuchHoldException() {
+        super("No such hold exists or it has expired");
+    }
+}
@@ -0,0 +1,7 @@
+package com.MovieTown.exceptions;
+
+public class TooManyHoldsException extends Exception{
+    public TooManyHoldsException(int maxSeats) {
+        super("A user can't hold more than " + maxSeats + " seats at once");
+    }
+}
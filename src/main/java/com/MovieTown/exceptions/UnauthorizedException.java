@@ -1,5 +1,9 @@
 package com.MovieTown.exceptions;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNAUTHORIZED)
 public class UnauthorizedException extends Exception{
     public UnauthorizedException() {
         super("You are unathorized for this action");
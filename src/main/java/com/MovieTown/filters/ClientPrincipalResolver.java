@@ -0,0 +1,38 @@
+package com.MovieTown.filters;
+
+import com.MovieTown.beans.ClientPrincipal;
+import com.MovieTown.exceptions.UnauthorizedException;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+//This class passes the principal that the token filter attached to a request to the controllers' ClientPrincipal parameters
+@Component
+public class ClientPrincipalResolver implements HandlerMethodArgumentResolver, WebMvcConfigurer {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.getParameterType() == ClientPrincipal.class;
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer, NativeWebRequest webRequest,
+                                  WebDataBinderFactory binderFactory) throws UnauthorizedException {
+        Object principal = webRequest.getAttribute(ClientPrincipal.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if(principal == null)
+            throw new UnauthorizedException();
+        return principal;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(this);
+    }
+}
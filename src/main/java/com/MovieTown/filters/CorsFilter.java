@@ -18,6 +18,8 @@ public class CorsFilter extends OncePerRequestFilter {
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "OPTIONS, GET, POST, PUT, DELETE, HEAD");
         response.setHeader("Access-Control-Allow-Headers", "Authorization, Origin, Accept, content-type, Access-Control-Request-Method, Access-Control-Request-Headers");
+        //The cursor of the next page of a list, which scripts can't read unless it's exposed
+        response.setHeader("Access-Control-Expose-Headers", "X-Next-Cursor");
         if(request.getMethod().equals("OPTIONS"))
             response.setStatus(HttpServletResponse.SC_ACCEPTED);
         else
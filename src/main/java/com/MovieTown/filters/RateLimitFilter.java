@@ -0,0 +1,107 @@
+package com.MovieTown.filters;
+
+import com.MovieTown.utils.RateLimiter;
+import com.MovieTown.utils.TokenHash;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//This filter limits the rate of requests of every client, by its token and by its address, with separate limits for every group of routes.
+//It runs before the token filter, so flooding clients are rejected before their tokens are verified.
+@Component
+@Order(2)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private boolean enabled;
+    private Map<RouteGroup, RateLimiter<Long>> byToken = new EnumMap<>(RouteGroup.class);
+    //Many clients may share an address, so the addresses' limits are the tokens' limits times a factor
+    private Map<RouteGroup, RateLimiter<String>> byAddress = new EnumMap<>(RouteGroup.class);
+
+    /***
+     * This constructor creates the rate limits. Every group's limit is "requests per second,burst".
+     */
+    public RateLimitFilter(@Value("${movietown.ratelimit.enabled:true}") boolean enabled,
+                           @Value("${movietown.ratelimit.seats:20,40}") String seats,
+                           @Value("${movietown.ratelimit.orders:2,5}") String orders,
+                           @Value("${movietown.ratelimit.login:1,5}") String login,
+                           @Value("${movietown.ratelimit.other:20,40}") String other,
+                           @Value("${movietown.ratelimit.address-factor:4}") int addressFactor) {
+        this.enabled = enabled;
+        addLimit(RouteGroup.SEATS, seats, addressFactor);
+        addLimit(RouteGroup.ORDERS, orders, addressFactor);
+        addLimit(RouteGroup.LOGIN, login, addressFactor);
+        addLimit(RouteGroup.OTHER, other, addressFactor);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        RouteGroup group = RouteGroup.of(RequestPaths.of(request), request.getMethod());
+        //The address is limited first, so a client can't grow the tokens' buckets faster than its address' limit with forged tokens
+        long wait = byAddress.get(group).tryAcquire(request.getRemoteAddr());
+        if(wait == 0){
+            Long tokenHash = tokenHash(request.getHeader("Authorization"));
+            if(tokenHash != null)
+                wait = byToken.get(group).tryAcquire(tokenHash);
+        }
+        if(wait > 0){
+            response.setStatus(429);
+            response.setHeader("Retry-After", String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1))));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
+        return !enabled;
+    }
+
+    /***
+     * This method returns the number of rejected requests by route group
+     * @return a map of route groups to the number of requests that were rejected
+     */
+    public Map<RouteGroup, Long> getRejected(){
+        Map<RouteGroup, Long> rejected = new EnumMap<>(RouteGroup.class);
+        for(RouteGroup group : RouteGroup.values()){
+            rejected.put(group, byToken.get(group).getRejected() + byAddress.get(group).getRejected());
+        }
+        return rejected;
+    }
+
+    public int getNumOfBuckets(){
+        int size = 0;
+        for(RouteGroup group : RouteGroup.values()){
+            size += byToken.get(group).size() + byAddress.get(group).size();
+        }
+        return size;
+    }
+
+    //The token isn't verified yet, so a token that can't be hashed is only limited by its address and left for the token filter to reject
+    private static Long tokenHash(String authorization){
+        if(authorization == null)
+            return null;
+        try {
+            return TokenHash.of(authorization.replace("Bearer ", ""));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void addLimit(RouteGroup group, String limit, int addressFactor){
+        String[] parts = limit.split(",");
+        double perSecond = Double.parseDouble(parts[0].trim());
+        int burst = Integer.parseInt(parts[1].trim());
+        byToken.put(group, new RateLimiter<>(perSecond, burst));
+        byAddress.put(group, new RateLimiter<>(perSecond * addressFactor, burst * addressFactor));
+    }
+}
@@ -0,0 +1,22 @@
+package com.MovieTown.filters;
+
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+
+//This class finds the path a request is routed by: decoded, without path parameters and without repeated slashes.
+//The filters check routes by this path and not by the raw URI, so an encoded character can't route a request past their checks.
+public class RequestPaths {
+
+    private RequestPaths() {
+    }
+
+    /***
+     * This method returns the request's path within the application, as the controllers' mappings are matched against it
+     * @param request a client's request
+     * @return the request's decoded and normalized path
+     */
+    public static String of(HttpServletRequest request){
+        return UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+    }
+}
@@ -0,0 +1,15 @@
+package com.MovieTown.filters;
+
+import com.MovieTown.beans.Role;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//Marks a controller, or one of its methods, as only for clients of a role. It's checked by the RoleInterceptor on the resolved handler.
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequiresRole {
+    Role value();
+}
@@ -0,0 +1,45 @@
+package com.MovieTown.filters;
+
+import com.MovieTown.beans.ClientPrincipal;
+import com.MovieTown.beans.MySession;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+//This interceptor checks the role of the client on the handler that was resolved for a request.
+//The token filter already checks the role by the route's path, so a request is only let through if both checks pass.
+@Component
+public class RoleInterceptor implements HandlerInterceptor, WebMvcConfigurer {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if(!(handler instanceof HandlerMethod))
+            return true;
+        HandlerMethod method = (HandlerMethod) handler;
+        RequiresRole required = AnnotatedElementUtils.findMergedAnnotation(method.getMethod(), RequiresRole.class);
+        if(required == null)
+            required = AnnotatedElementUtils.findMergedAnnotation(method.getBeanType(), RequiresRole.class);
+        if(required == null)
+            return true;
+        Object principal = request.getAttribute(ClientPrincipal.ATTRIBUTE);
+        if(principal instanceof ClientPrincipal){
+            ClientPrincipal client = (ClientPrincipal) principal;
+            MySession session = client.getSession();
+            if(client.getRole() == required.value() && session != null && session.getRole() == required.value())
+                return true;
+        }
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        return false;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+}
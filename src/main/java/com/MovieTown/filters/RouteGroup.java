@@ -0,0 +1,25 @@
+package com.MovieTown.filters;
+
+//The groups of routes that have their own rate limits
+public enum RouteGroup {
+    SEATS,
+    ORDERS,
+    LOGIN,
+    OTHER;
+
+    /***
+     * This method finds the group of a request's route
+     * @param path the request's decoded path, by RequestPaths
+     * @param method the request's HTTP method
+     * @return the route's group
+     */
+    public static RouteGroup of(String path, String method){
+        if(path.contains("/screenings/seats/"))
+            return SEATS;
+        if(path.startsWith("/user/orders") || path.startsWith("/user/holds") || (path.startsWith("/user/") && method.equals("DELETE")))
+            return ORDERS;
+        if(path.startsWith("/client/login") || path.startsWith("/client/register"))
+            return LOGIN;
+        return OTHER;
+    }
+}
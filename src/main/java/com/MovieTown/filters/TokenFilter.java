@@ -1,9 +1,16 @@
 package com.MovieTown.filters;
 
+import com.MovieTown.beans.ClientPrincipal;
 import com.MovieTown.beans.MySession;
-import com.MovieTown.exceptions.UnauthorizedException;
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.MovieTown.beans.Role;
+import com.MovieTown.beans.VerifiedToken;
+import com.MovieTown.utils.LruCache;
+import com.MovieTown.utils.SessionStore;
+import com.MovieTown.utils.TokenHash;
+import com.MovieTown.utils.TokenRevocations;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
@@ -14,38 +21,98 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.HashMap;
+import java.time.Instant;
 
 @Component
-@Order(2)
+@Order(3)
 public class TokenFilter extends OncePerRequestFilter {
 
-    //HashMap<String, MySession> sessions;
+    private JWTVerifier jwtVerifier;
+    //Tokens that were already verified, by their hash, so repeated requests skip the base64 and JSON decoding
+    private LruCache<Long, VerifiedToken> verifiedTokens;
+    private TokenRevocations revocations;
+    private SessionStore sessions;
 
-    //public TokenFilter(HashMap<String, MySession> sessions) {
-    //    this.sessions = sessions;
-    //}
+    public TokenFilter(JWTVerifier jwtVerifier, LruCache<Long, VerifiedToken> verifiedTokens, TokenRevocations revocations,
+                       SessionStore sessions) {
+        this.jwtVerifier = jwtVerifier;
+        this.verifiedTokens = verifiedTokens;
+        this.revocations = revocations;
+        this.sessions = sessions;
+    }
 
+    /***
+     * This method authenticates a request once: it verifies the token, finds its session and checks that the client's
+     * role may use the route, and attaches the result to the request as a ClientPrincipal
+     */
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        VerifiedToken verifiedToken;
+        long hash;
         try{
             String token = request.getHeader("Authorization").replace("Bearer ", "");
-            DecodedJWT decoded = JWT.decode(token);
-            String iss = decoded.getClaim("iss").toString();
-            if(!iss.equals("\"Movie Town\"")){
-                throw new UnauthorizedException();
+            hash = TokenHash.of(token);
+            //Signed out tokens are rejected before anything else is done with them
+            if(revocations.isRevoked(token, hash)){
+                response.setStatus(401);
+                return;
             }
-            String type = decoded.getClaim("type").asString();
-            request.setAttribute("type", type);
-            filterChain.doFilter(request, response);
-        }catch (JWTDecodeException | NullPointerException | UnauthorizedException e){
+            verifiedToken = verify(token, hash);
+        }catch (JWTVerificationException | IllegalArgumentException | NullPointerException e){
+            response.setStatus(401);
+            return;
+        }
+        MySession session = sessions.touch(hash);
+        Role role = requiredRole(RequestPaths.of(request));
+        if(role != null && (verifiedToken.getRole() != role || session == null || session.getRole() != role)){
             response.setStatus(401);
+            return;
         }
+        request.setAttribute(ClientPrincipal.ATTRIBUTE, new ClientPrincipal(verifiedToken, hash, session));
+        filterChain.doFilter(request, response);
     }
 
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
-        String path = request.getRequestURI();
+        String path = RequestPaths.of(request);
         return path.startsWith("/client") && !path.startsWith("/client/out");
     }
+
+    /***
+     * This method verifies a token's signature and issuer, unless it was verified before
+     * @param token a JWT token
+     * @param hash the token's hash by TokenHash
+     * @return the token's verified claims
+     * @throws JWTVerificationException if the token is not valid or has expired
+     */
+    private VerifiedToken verify(String token, long hash) throws JWTVerificationException {
+        VerifiedToken verifiedToken = verifiedTokens.get(hash);
+        //The hash is only a key, the whole token must match before it's trusted
+        if(verifiedToken != null && verifiedToken.getToken().equals(token)){
+            if(verifiedToken.getExpiresAt() > System.currentTimeMillis())
+                return verifiedToken;
+            verifiedTokens.remove(hash);
+            throw new TokenExpiredException("The token has expired", Instant.ofEpochMilli(verifiedToken.getExpiresAt()));
+        }
+        DecodedJWT decoded = jwtVerifier.verify(token);
+        Integer id = decoded.getClaim("id").asInt();
+        //Tokens from before tokens had an expiry time are trusted until the cache evicts them
+        long expiresAt = decoded.getExpiresAt() == null ? Long.MAX_VALUE : decoded.getExpiresAt().getTime();
+        verifiedToken = new VerifiedToken(token, Role.valueOf(decoded.getClaim("type").asString()), id == null ? 0 : id, expiresAt);
+        verifiedTokens.put(hash, verifiedToken);
+        return verifiedToken;
+    }
+
+    /***
+     * This method returns the role a route requires: /user routes are for users and /admin routes for the admin
+     * @param path the request's decoded path, by RequestPaths
+     * @return the required role, or null if any client with a valid token may use the route
+     */
+    static Role requiredRole(String path){
+        if(path.startsWith("/user"))
+            return Role.USER;
+        if(path.startsWith("/admin"))
+            return Role.ADMINISTRATOR;
+        return null;
+    }
 }
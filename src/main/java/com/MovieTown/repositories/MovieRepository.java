@@ -2,13 +2,25 @@ package com.MovieTown.repositories;
 
 import com.MovieTown.beans.Genre;
 import com.MovieTown.beans.Movie;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
 import java.util.List;
 
 @Repository
 public interface MovieRepository extends JpaRepository<Movie, Integer> {
 
     public List<Movie> findByGenre(Genre genre);
+
+    //A page of the movies after the given id, ordered by id
+    public Slice<Movie> findByIdGreaterThanOrderById(int id, Pageable pageable);
+
+    //The movies that have screenings in a city after the given time, as a semi-join so every movie appears once
+    @Query("select m from Movie m where m.id in (select s.movie.id from Screening s where s.cinema.city = :city and s.time > :time)")
+    public List<Movie> findWithUpcomingScreeningsInCity(@Param("city") String city, @Param("time") Date time);
 }
@@ -1,13 +1,36 @@
 package com.MovieTown.repositories;
 
 import com.MovieTown.beans.Order;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order,Integer> {
+public interface OrderRepository extends JpaRepository<Order,Integer>, OrderRepositoryCustom {
 
     public List<Order> findByUserId(int id);
+
+    //The ids of a page of the orders after the given id, ordered by id.
+    //The orders are paged by their ids alone, as a page of orders fetched with their seats would be paged in memory.
+    @Query("select o.id from Order o where o.id > :after order by o.id")
+    public Slice<Integer> findIdsAfter(@Param("after") int after, Pageable pageable);
+
+    @Query("select o.id from Order o where o.user.id = :userId and o.id > :after order by o.id")
+    public Slice<Integer> findIdsByUserIdAfter(@Param("userId") int userId, @Param("after") int after, Pageable pageable);
+
+    //The orders with the given ids, with their users, seats and the seats' screenings in the same query
+    @Query("select distinct o from Order o join fetch o.user left join fetch o.seats s left join fetch s.screening sc " +
+            "left join fetch sc.movie left join fetch sc.cinema where o.id in :ids order by o.id")
+    public List<Order> findWithSeatsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM `orders` WHERE `id` IN :ids", nativeQuery = true)
+    public int deleteByIds(@Param("ids") Collection<Integer> ids);
 }
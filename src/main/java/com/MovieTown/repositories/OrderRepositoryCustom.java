@@ -0,0 +1,17 @@
+package com.MovieTown.repositories;
+
+import com.MovieTown.utils.ExportWriter;
+
+import java.io.IOException;
+
+//Order queries that are written with JDBC instead of JPA
+public interface OrderRepositoryCustom {
+
+    /***
+     * This method exports all the orders, one row per order with its user, screening and seats.
+     * The rows are streamed from the DB and written as they arrive, so the orders are never held in memory.
+     * @param writer the export's writer
+     * @throws IOException if the export can't be written
+     */
+    public void exportOrders(ExportWriter writer) throws IOException;
+}
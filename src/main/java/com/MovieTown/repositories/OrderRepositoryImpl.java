@@ -0,0 +1,91 @@
+package com.MovieTown.repositories;
+
+import com.MovieTown.utils.ExportWriter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+
+public class OrderRepositoryImpl implements OrderRepositoryCustom {
+
+    private JdbcTemplate exportTemplate;
+
+    public OrderRepositoryImpl(DataSource dataSource) {
+        //A forward only, read only statement with this fetch size makes the MySQL driver stream the rows one at a time
+        //instead of reading the whole result into memory
+        this.exportTemplate = new JdbcTemplate(dataSource);
+        this.exportTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    @Override
+    public void exportOrders(ExportWriter writer) throws IOException {
+        writer.writeHeader("id", "price", "status", "userId", "email", "screeningId", "time", "movie", "seats");
+        //An order's seats come in consecutive rows, they are collected until the next order starts
+        OrderRow current = new OrderRow();
+        try {
+            exportTemplate.query("SELECT o.`id`, o.`price`, o.`status`, u.`id` AS `user_id`, u.`email`, sc.`id` AS `screening_id`, sc.`time`, " +
+                    "m.`name` AS `movie`, s.`row`, s.`column` FROM `orders` o LEFT JOIN `users` u ON u.`id` = o.`user_id` " +
+                    "LEFT JOIN `seats` s ON s.`order_id` = o.`id` LEFT JOIN `screenings` sc ON sc.`id` = s.`screening_id` " +
+                    "LEFT JOIN `movies` m ON m.`id` = sc.`movie_id` ORDER BY o.`id`", resultSet -> {
+                try {
+                    int id = resultSet.getInt("id");
+                    if(id != current.id){
+                        current.write(writer);
+                        current.read(id, resultSet);
+                    }
+                    int row = resultSet.getInt("row");
+                    if(!resultSet.wasNull())
+                        current.addSeat(row, resultSet.getInt("column"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        current.write(writer);
+    }
+
+    //The order that's being read, its fields are reused for every order
+    private static class OrderRow {
+        private int id;
+        private int price;
+        private String status;
+        private Integer userId;
+        private String email;
+        private Integer screeningId;
+        private Date time;
+        private String movie;
+        //The seats as "row:column" separated by spaces
+        private final StringBuilder seats = new StringBuilder();
+
+        private void read(int id, ResultSet resultSet) throws SQLException {
+            this.id = id;
+            price = resultSet.getInt("price");
+            status = resultSet.getString("status");
+            int user = resultSet.getInt("user_id");
+            userId = resultSet.wasNull() ? null : user;
+            email = resultSet.getString("email");
+            int screening = resultSet.getInt("screening_id");
+            screeningId = resultSet.wasNull() ? null : screening;
+            time = resultSet.getTimestamp("time");
+            movie = resultSet.getString("movie");
+            seats.setLength(0);
+        }
+
+        private void addSeat(int row, int column){
+            if(seats.length() > 0)
+                seats.append(' ');
+            seats.append(row).append(':').append(column);
+        }
+
+        private void write(ExportWriter writer) throws IOException {
+            if(id != 0)
+                writer.writeRow(id, price, status, userId, email, screeningId, time, movie, seats.toString());
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package com.MovieTown.repositories;
 
 import com.MovieTown.beans.Screening;
+import com.MovieTown.beans.Genre;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Date;
@@ -17,4 +23,21 @@ public interface ScreeningRepository extends JpaRepository<Screening, Integer> {
     public List<Screening> findByMovieIdAndTimeGreaterThan(int id, Date time);
 
     public List<Screening> findByTimeLessThan(Date time);
+
+    //The screenings of a city after the given time, with their cinemas and movies in the same query
+    @Query("select s from Screening s join fetch s.cinema c join fetch s.movie where c.city = :city and s.time > :time order by s.time, s.id")
+    public List<Screening> findUpcomingByCity(@Param("city") String city, @Param("time") Date time);
+
+    //The screenings of a genre's movies after the given time, with their movies and cinemas in the same query
+    @Query("select s from Screening s join fetch s.movie m join fetch s.cinema where m.genre = :genre and s.time > :time order by s.time, s.id")
+    public List<Screening> findUpcomingByGenre(@Param("genre") Genre genre, @Param("time") Date time, Pageable pageable);
+
+    //A page of the screenings after the given id, ordered by id, with their movies and cinemas in the same query
+    @Query("select s from Screening s join fetch s.movie join fetch s.cinema where s.id > :after order by s.id")
+    public Slice<Screening> findPageAfter(@Param("after") int after, Pageable pageable);
+
+    //count is negative when seats are freed
+    @Modifying
+    @Query("update Screening s set s.reservedSeats = s.reservedSeats + :count where s.id = :id")
+    public int addReservedSeats(@Param("id") int id, @Param("count") int count);
 }
@@ -2,13 +2,38 @@ package com.MovieTown.repositories;
 
 import com.MovieTown.beans.Seat;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface SeatRepository extends JpaRepository<Seat, Integer> {
+public interface SeatRepository extends JpaRepository<Seat, Integer>, SeatRepositoryCustom {
 
     public List<Seat> findByScreeningId(int id);
     public List<Seat> findByOrderId(int id);
+
+    //Only free seats match, so the number of updated rows tells if the whole block was reserved
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE `seats` SET `reserved` = true, `order_id` = :orderId WHERE `screening_id` = :screeningId " +
+            "AND `row` = :row AND `column` BETWEEN :firstColumn AND :lastColumn AND `reserved` = false", nativeQuery = true)
+    public int reserveSeats(@Param("orderId") int orderId, @Param("screeningId") int screeningId, @Param("row") int row,
+                            @Param("firstColumn") int firstColumn, @Param("lastColumn") int lastColumn);
+
+    @Modifying
+    @Query(value = "UPDATE `seats` SET `reserved` = false, `order_id` = NULL WHERE `order_id` = :orderId", nativeQuery = true)
+    public int freeByOrderId(@Param("orderId") int orderId);
+
+    @Modifying
+    @Query(value = "DELETE FROM `seats` WHERE `order_id` = :orderId", nativeQuery = true)
+    public int deleteByOrderId(@Param("orderId") int orderId);
+
+    @Query(value = "SELECT DISTINCT `order_id` FROM `seats` WHERE `screening_id` = :screeningId AND `order_id` IS NOT NULL", nativeQuery = true)
+    public List<Integer> findOrderIdsByScreeningId(@Param("screeningId") int screeningId);
+
+    @Modifying
+    @Query(value = "DELETE FROM `seats` WHERE `screening_id` = :screeningId", nativeQuery = true)
+    public int deleteByScreeningId(@Param("screeningId") int screeningId);
 }
@@ -0,0 +1,25 @@
+package com.MovieTown.repositories;
+
+//Seat queries that are written with JDBC instead of JPA
+public interface SeatRepositoryCustom {
+
+    /***
+     * This method inserts all the free seats of a screening with a single multi-row statement
+     * @param screeningId a screening id
+     * @param numOfRows the number of rows in the screening's cinema
+     * @param numOfColumns the number of columns in the screening's cinema
+     * @return the number of inserted seats
+     */
+    public int insertSeats(int screeningId, int numOfRows, int numOfColumns);
+
+    /***
+     * This method inserts a block of adjacent reserved seats of an order with a single statement
+     * @param orderId an order id
+     * @param screeningId a screening id
+     * @param row the block's row
+     * @param firstColumn the block's first column
+     * @param lastColumn the block's last column
+     * @return the number of inserted seats
+     */
+    public int insertReservedSeats(int orderId, int screeningId, int row, int firstColumn, int lastColumn);
+}
@@ -0,0 +1,39 @@
+package com.MovieTown.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class SeatRepositoryImpl implements SeatRepositoryCustom {
+
+    private JdbcTemplate jdbcTemplate;
+
+    public SeatRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int insertSeats(int screeningId, int numOfRows, int numOfColumns) {
+        //All the values are ints generated here, so they are written into the statement instead of binding 3 parameters per seat
+        StringBuilder sql = new StringBuilder(64 + numOfRows * numOfColumns * 20)
+                .append("INSERT INTO `seats` (`reserved`, `row`, `column`, `screening_id`) VALUES ");
+        for(int i = 1; i <= numOfRows; i++){
+            for(int j = 1; j <= numOfColumns; j++){
+                if(i > 1 || j > 1)
+                    sql.append(',');
+                sql.append("(false,").append(i).append(',').append(j).append(',').append(screeningId).append(')');
+            }
+        }
+        return jdbcTemplate.update(sql.toString());
+    }
+
+    @Override
+    public int insertReservedSeats(int orderId, int screeningId, int row, int firstColumn, int lastColumn) {
+        StringBuilder sql = new StringBuilder(96 + (lastColumn - firstColumn + 1) * 32)
+                .append("INSERT INTO `seats` (`reserved`, `row`, `column`, `screening_id`, `order_id`) VALUES ");
+        for(int j = firstColumn; j <= lastColumn; j++){
+            if(j > firstColumn)
+                sql.append(',');
+            sql.append("(true,").append(row).append(',').append(j).append(',').append(screeningId).append(',').append(orderId).append(')');
+        }
+        return jdbcTemplate.update(sql.toString());
+    }
+}
@@ -1,15 +1,16 @@
 package com.MovieTown.repositories;
 
 import com.MovieTown.beans.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-import java.util.List;
+import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Integer> {
+public interface UserRepository extends JpaRepository<User, Integer>, UserRepositoryCustom {
 
-    public boolean existsByEmail(String email);
+    public Optional<User> findByEmail(String email);
 
-    public User findByEmailAndPassword(String email, String password);
-
-    public List<User> findByEmail(String email);
+    //A page of the users after the given id, ordered by id
+    public Slice<User> findByIdGreaterThanOrderById(int id, Pageable pageable);
 }
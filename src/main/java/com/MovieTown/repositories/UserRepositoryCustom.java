@@ -0,0 +1,17 @@
+package com.MovieTown.repositories;
+
+import com.MovieTown.utils.ExportWriter;
+
+import java.io.IOException;
+
+//User queries that are written with JDBC instead of JPA
+public interface UserRepositoryCustom {
+
+    /***
+     * This method exports all the users without their passwords.
+     * The rows are streamed from the DB and written as they arrive, so the users are never held in memory.
+     * @param writer the export's writer
+     * @throws IOException if the export can't be written
+     */
+    public void exportUsers(ExportWriter writer) throws IOException;
+}
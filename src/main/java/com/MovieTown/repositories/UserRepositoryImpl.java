@@ -0,0 +1,36 @@
+package com.MovieTown.repositories;
+
+import com.MovieTown.utils.ExportWriter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private JdbcTemplate exportTemplate;
+
+    public UserRepositoryImpl(DataSource dataSource) {
+        //A forward only, read only statement with this fetch size makes the MySQL driver stream the rows one at a time
+        //instead of reading the whole result into memory
+        this.exportTemplate = new JdbcTemplate(dataSource);
+        this.exportTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    @Override
+    public void exportUsers(ExportWriter writer) throws IOException {
+        writer.writeHeader("id", "name", "email");
+        try {
+            exportTemplate.query("SELECT `id`, `name`, `email` FROM `users` ORDER BY `id`", resultSet -> {
+                try {
+                    writer.writeRow(resultSet.getInt("id"), resultSet.getString("name"), resultSet.getString("email"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -3,33 +3,50 @@ package com.MovieTown.services;
 import com.MovieTown.beans.*;
 import com.MovieTown.exceptions.*;
 import com.MovieTown.repositories.*;
+import com.MovieTown.utils.ExportWriter;
+import com.MovieTown.utils.Keyset;
 import org.aspectj.weaver.ast.Or;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class AdminService extends ClientService implements Registered{
+    private static final Logger logger = LoggerFactory.getLogger(AdminService.class);
+
     private UserRepository userRepository;
     private OrderRepository orderRepository;
+    private ImageStore imageStore;
+    private ImageVariants imageVariants;
 
     public AdminService(MovieRepository movieRepository, ScreeningRepository screeningRepository, CinemaRepository cinemaRepository,
-                        UserRepository userRepository, SeatRepository seatRepository, UserRepository userRepository1, OrderRepository orderRepository) {
-        super(movieRepository, screeningRepository, cinemaRepository,seatRepository, userRepository);
+                        UserRepository userRepository, SeatRepository seatRepository, UserRepository userRepository1, OrderRepository orderRepository,
+                        SeatMapService seatMapService, CredentialService credentialService, CatalogCache catalogCache, ImageStore imageStore,
+                        ImageVariants imageVariants) {
+        super(movieRepository, screeningRepository, cinemaRepository,seatRepository, userRepository, seatMapService, credentialService, catalogCache);
         this.seatRepository = seatRepository;
         this.userRepository = userRepository1;
         this.orderRepository = orderRepository;
+        this.imageStore = imageStore;
+        this.imageVariants = imageVariants;
     }
 
     /**
      * This method attempts to log in as the admin.
      * @param email the email of the admin
      * @param password the password of the admin
-     * @return AdminService if the login succeeded and null if it failed.
+     * @return the admin's session if the login succeeded and null if it failed.
      */
-    public AdminService login(String email, String password) {
-        return email.equals("admin@admin.com") && password.equals("admin") ? this : null;
+    public MySession login(String email, String password) {
+        return email.equals("admin@admin.com") && password.equals("admin") ? new MySession(0, Role.ADMINISTRATOR, System.currentTimeMillis()) : null;
     }
 
     /***
@@ -37,13 +54,21 @@ public class AdminService extends ClientService implements Registered{
      * @param movie a Movie object
      * @return a Movie object with an updated id
      * @throws MovieExistsException if the a movie with that name or id exists in the DB
+     * @throws IOException if the movie's poster can't be stored
      */
-    public Movie addMovie(Movie movie) throws MovieExistsException {
+    public Movie addMovie(Movie movie) throws MovieExistsException, IOException {
         if(movieRepository.existsById(movie.getId()) || movieRepository.findAll().stream().anyMatch(m -> m.getName().equals(movie.getName())))
             throw new MovieExistsException();
         movie.setName(movie.getName().toUpperCase());
         movie.setDescription(movie.getDescription().toUpperCase().charAt(0)+movie.getDescription().substring(1));//Make description start with capital letter
-        return movieRepository.save(movie);
+        Movie added = movieRepository.save(movie);
+        if(movie.getImage() != null){
+            added.setImageVersion(imageStore.save(added.getId(), movie.getImage()));
+            added = movieRepository.save(added);
+            imageVariants.update(added.getId(), added.getImageVersion());
+        }
+        catalogCache.clear();
+        return added;
     }
 
     /***
@@ -52,14 +77,21 @@ public class AdminService extends ClientService implements Registered{
      * @return an updated Movie object
      * @throws NoSuchMovieException if there's no movie in the DB with that id
      * @throws InvalidMovieUpdateException if the received movie's name doesn't match the one in the DB
+     * @throws IOException if the movie's poster can't be stored
      */
-    public Movie updateMovie(Movie movie) throws NoSuchMovieException, InvalidMovieUpdateException, MovieExistsException {
+    public Movie updateMovie(Movie movie) throws NoSuchMovieException, InvalidMovieUpdateException, MovieExistsException, IOException {
         Movie movie1 = movieRepository.findById(movie.getId()).orElseThrow(NoSuchMovieException::new);
         if(!movie.getName().equals(movie1.getName()))
             throw new InvalidMovieUpdateException();
         if(movieRepository.findAll().stream().anyMatch(m -> m.getName().equals(movie.getName()) && movie.getId() != m.getId()))
             throw new MovieExistsException();
-        return movieRepository.save(movie);
+        //A movie that's updated without a poster keeps its current poster
+        movie.setImageVersion(movie.getImage() == null ? movie1.getImageVersion() : imageStore.save(movie.getId(), movie.getImage()));
+        Movie updated = movieRepository.save(movie);
+        if(movie.getImage() != null)
+            imageVariants.update(movie.getId(), updated.getImageVersion());
+        catalogCache.clear();
+        return updated;
     }
 
     /***
@@ -72,6 +104,10 @@ public class AdminService extends ClientService implements Registered{
         if(!movieRepository.existsById(id))
             throw new NoSuchMovieException();
         movieRepository.deleteById(id);
+        imageStore.delete(id);
+        imageVariants.delete(id);
+        seatMapService.evictIf(screening -> screening.getMovie().getId() == id);
+        catalogCache.clear();
         return "Movie deleted";
     }
 
@@ -109,6 +145,8 @@ public class AdminService extends ClientService implements Registered{
             cinemaRepository.save(cinema1);
         }
         cinemaRepository.deleteById(id);
+        seatMapService.evictIf(screening -> screening.getCinema().getId() == id);
+        catalogCache.clear();
         return "Cinema deleted";
     }
 
@@ -142,13 +180,15 @@ public class AdminService extends ClientService implements Registered{
     }
 
     /***
-     * This method receives a Screening object, creates seats for it and add them and the screening to the DB
+     * This method receives a Screening object, creates seats for it and add them and the screening to the DB.
+     * The screening and its seats are added in one transaction, and the seats are inserted with a single statement.
      * @param screening a Screening object
      * @return a Movie object with an updated id
      * @throws UnavailableTimeException if there's already an existing screening in that cinema during the given one's time
      * @throws ScreeningExistsException if there's a screening with that id
      * @throws ScreeningExistsException if the given screening has seats
      */
+    @Transactional(rollbackFor = Exception.class)
     public Screening addScreening(Screening screening) throws UnavailableTimeException, ScreeningExistsException, ScreeningWithSeatsException {
         if(screeningRepository.existsById(screening.getId())){
             throw new ScreeningExistsException();
@@ -163,17 +203,12 @@ public class AdminService extends ClientService implements Registered{
         // 2. Because the screening's time is in the past
         if(screenings.stream().anyMatch(s -> checkScreeningsTime(startScreening, endScreening, s)) || screening.getTime().getTime() < new Date().getTime())
             throw new UnavailableTimeException();
+        long start = System.nanoTime();
         screening = screeningRepository.save(screening);
-        List<Seat> seats = new LinkedList<>();
-        Cinema cinema = screening.getCinema();
-        for(int i = 1; i <= cinema.getNumOfRows(); i++){
-            for(int j = 1; j <= cinema.getNumOfColumns(); j++){
-                Seat seat = new Seat(i, j, screening);
-                seats.add(seat);
-                seatRepository.save(seat);
-            }
-        }
-        screening.setSeats(seats);
+        Cinema cinema = cinemaRepository.findById(screening.getCinema().getId()).orElse(screening.getCinema());
+        int numOfSeats = seatMapService.addSeats(screening, cinema.getNumOfRows(), cinema.getNumOfColumns());
+        logger.info("Screening {} and its {} seats were added in {} ms", screening.getId(), numOfSeats, (System.nanoTime() - start) / 1000000.0);
+        catalogCache.evictScreening(screening.getId());
         return screening;
     }
 
@@ -210,29 +245,50 @@ public class AdminService extends ClientService implements Registered{
         if (screenings.stream().anyMatch(scr -> scr.getId() != screening.getId() && checkScreeningsTime(screeningTime, endScreening, scr))
                 || screening.getTime().getTime() < new Date().getTime())
             throw new UnavailableTimeException();
-        return screeningRepository.save(screening);
+        Screening updated = screeningRepository.save(screening);
+        seatMapService.evict(updated.getId());
+        catalogCache.evictScreening(updated.getId());
+        return updated;
     }
 
     /***
-     * This method receives a Screening id and deletes the corresponding object in the DB
+     * This method receives a Screening id and deletes the corresponding object in the DB.
+     * The screening's seats and their orders are deleted with set-based statements in the same transaction.
      * @param id a Screening id
      * @return a confirmation of deletion
      * @throws NoSuchScreeningException if there's no screening in the DB with that id
      */
+    @Transactional(rollbackFor = Exception.class)
     public String deleteScreening(int id) throws NoSuchScreeningException {
         if(!screeningRepository.existsById(id)){
             throw new NoSuchScreeningException();
         }
+        seatMapService.deleteSeats(id);
         screeningRepository.deleteById(id);
+        catalogCache.evictScreening(id);
         return "Screening deleted";
     }
 
     /***
-     * This method returns a list of all the users in the DB
-     * @return a list of all the users in the DB
+     * This method returns a page of the users in the DB, ordered by id
+     * @param after the id of the last user of the previous page (0 for the first page)
+     * @param limit the number of users in a page, at most Keyset.MAX_LIMIT
+     * @return a page of the users whose ids come after the given one
+     */
+    public Slice<User> getUsers(int after, int limit){
+        return userRepository.findByIdGreaterThanOrderById(after, Keyset.limit(limit));
+    }
+
+    /***
+     * This method exports all the users to a stream, with constant memory however many users there are
+     * @param format the export's format
+     * @param out the stream the export is written to
+     * @throws IOException if the export can't be written
      */
-    public List<User> getAllUsers(){
-        return userRepository.findAll();
+    public void exportUsers(ExportFormat format, OutputStream out) throws IOException {
+        try(ExportWriter writer = ExportWriter.of(format, out)){
+            userRepository.exportUsers(writer);
+        }
     }
 
     /***
@@ -248,11 +304,29 @@ public class AdminService extends ClientService implements Registered{
     }
 
     /***
-     * This method returns a list of all the orders in the DB
-     * @return a list of Order objects
+     * This method returns a page of the orders in the DB, ordered by id.
+     * The page's ids are selected first and then its orders are fetched with their seats and users, so it takes two queries.
+     * @param after the id of the last order of the previous page (0 for the first page)
+     * @param limit the number of orders in a page, at most Keyset.MAX_LIMIT
+     * @return a page of the orders whose ids come after the given one
      */
-    public List<Order> getAllOrders(){
-        return orderRepository.findAll();
+    public Slice<Order> getOrders(int after, int limit){
+        Slice<Integer> ids = orderRepository.findIdsAfter(after, Keyset.limit(limit));
+        List<Order> orders = ids.isEmpty() ? new ArrayList<>() : orderRepository.findWithSeatsByIdIn(ids.getContent());
+        return new SliceImpl<>(orders, ids.getPageable(), ids.hasNext());
+    }
+
+    /***
+     * This method exports all the orders with their users, screenings and seats to a stream,
+     * with constant memory however many orders there are
+     * @param format the export's format
+     * @param out the stream the export is written to
+     * @throws IOException if the export can't be written
+     */
+    public void exportOrders(ExportFormat format, OutputStream out) throws IOException {
+        try(ExportWriter writer = ExportWriter.of(format, out)){
+            orderRepository.exportOrders(writer);
+        }
     }
 
     /***
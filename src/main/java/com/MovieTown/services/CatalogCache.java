@@ -0,0 +1,145 @@
+package com.MovieTown.services;
+
+import com.MovieTown.beans.Movie;
+import com.MovieTown.beans.Screening;
+import com.MovieTown.utils.LruCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+//This service caches the catalog that every client browses: movies and screenings by id, and the lists of them.
+//The admin's changes invalidate the catalog explicitly after they commit. The orders only change the screenings' counts of
+//reserved seats, so instead of clearing the lists on every order, the screenings and the lists are reloaded once they are a few seconds old.
+@Service
+public class CatalogCache {
+
+    private LruCache<Integer, Loaded<Movie>> movies;
+    private LruCache<Integer, Loaded<Screening>> screenings;
+    private LruCache<String, Loaded<List<?>>> lists;
+    private long seatsTtlMillis;
+    //Grows on every invalidation before the cache is cleared, so a value loaded before an invalidation isn't left cached after it
+    private final AtomicLong generation = new AtomicLong();
+
+    public CatalogCache(@Value("${movietown.catalog.cache-size:10000}") int capacity,
+                        @Value("${movietown.catalog.seats-ttl-seconds:5}") long seatsTtlSeconds) {
+        this.seatsTtlMillis = seatsTtlSeconds * 1000;
+        int concurrency = Runtime.getRuntime().availableProcessors() * 4;
+        this.movies = new LruCache<>(capacity, concurrency);
+        this.screenings = new LruCache<>(capacity, concurrency);
+        this.lists = new LruCache<>(Math.max(capacity / 100, 16), concurrency);
+    }
+
+    public Optional<Movie> getMovie(int id, Supplier<Optional<Movie>> loader){
+        return Optional.ofNullable(get(movies, id, 0, () -> loader.get().orElse(null)));
+    }
+
+    /***
+     * This method returns a cached screening, or loads and caches it.
+     * A cached screening's count of reserved seats may be up to a few seconds old.
+     * @param id a Screening id
+     * @param loader loads the screening from the DB
+     * @return the screening, or an empty Optional if there's no such screening
+     */
+    public Optional<Screening> getScreening(int id, Supplier<Optional<Screening>> loader){
+        return Optional.ofNullable(get(screenings, id, seatsTtlMillis, () -> loader.get().orElse(null)));
+    }
+
+    /***
+     * This method returns a cached list, or loads and caches it.
+     * A list may include screenings, so it's reloaded when it's as old as a cached screening can be.
+     * @param key the list's key
+     * @param loader loads the list from the DB
+     * @return the list, which must not be modified
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getList(String key, Supplier<List<T>> loader){
+        return (List<T>) get(lists, key, seatsTtlMillis, () -> Collections.unmodifiableList(loader.get()));
+    }
+
+    /***
+     * This method invalidates the whole catalog, for changes of movies and cinemas that screenings include
+     */
+    public void clear(){
+        invalidate(() -> {
+            movies.clear();
+            screenings.clear();
+            lists.clear();
+        });
+    }
+
+    /***
+     * This method invalidates a screening and the lists that may include it
+     * @param id a Screening id
+     */
+    public void evictScreening(int id){
+        invalidate(() -> {
+            screenings.remove(id);
+            lists.clear();
+        });
+    }
+
+    public long getHits(){
+        return movies.getHits() + screenings.getHits() + lists.getHits();
+    }
+
+    public long getMisses(){
+        return movies.getMisses() + screenings.getMisses() + lists.getMisses();
+    }
+
+    public int size(){
+        return movies.size() + screenings.size() + lists.size();
+    }
+
+    //A ttl of 0 keeps the value until it's invalidated or evicted
+    private <K, T> T get(LruCache<K, Loaded<T>> cache, K key, long ttlMillis, Supplier<T> loader){
+        Loaded<T> cached = cache.get(key);
+        long now = System.currentTimeMillis();
+        if(cached != null && (ttlMillis == 0 || now - cached.time < ttlMillis))
+            return cached.value;
+        long current = generation.get();
+        T value = loader.get();
+        if(value == null)
+            return null;
+        cache.put(key, new Loaded<>(value, now));
+        //An invalidation that ran while the value was loaded may have cleared the cache before the put, so it's removed again
+        if(generation.get() != current)
+            cache.remove(key);
+        return value;
+    }
+
+    //Inside a transaction the cache is invalidated after the commit, so readers can't cache the old values again meanwhile
+    private void invalidate(Runnable invalidation){
+        Runnable task = () -> {
+            generation.incrementAndGet();
+            invalidation.run();
+        };
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            task.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
+    }
+
+    //A cached value and the time it was loaded at
+    private static class Loaded<T> {
+        private final T value;
+        private final long time;
+
+        private Loaded(T value, long time) {
+            this.value = value;
+            this.time = time;
+        }
+    }
+}
@@ -3,6 +3,11 @@ package com.MovieTown.services;
 import com.MovieTown.beans.*;
 import com.MovieTown.exceptions.*;
 import com.MovieTown.repositories.*;
+import com.MovieTown.utils.Keyset;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -10,6 +15,7 @@ import java.util.*;
 //this class consists of methods and attributes every client has
 @Service
 public class ClientService {
+    public static final int MAX_PAGE_SIZE = 100;
 
     protected MovieRepository movieRepository;
     protected ScreeningRepository screeningRepository;
@@ -17,18 +23,25 @@ public class ClientService {
 
     protected SeatRepository seatRepository;
     protected UserRepository userRepository;
+    protected SeatMapService seatMapService;
+    protected CredentialService credentialService;
+    protected CatalogCache catalogCache;
 
     public ClientService(MovieRepository movieRepository, ScreeningRepository screeningRepository, CinemaRepository cinemaRepository,
-                         SeatRepository seatRepository ,UserRepository userRepository) {
+                         SeatRepository seatRepository ,UserRepository userRepository, SeatMapService seatMapService,
+                         CredentialService credentialService, CatalogCache catalogCache) {
         this.movieRepository = movieRepository;
         this.screeningRepository = screeningRepository;
         this.cinemaRepository = cinemaRepository;
         this.seatRepository = seatRepository;
         this.userRepository = userRepository;
+        this.seatMapService = seatMapService;
+        this.credentialService = credentialService;
+        this.catalogCache = catalogCache;
     }
 
     /**
-     * This method receives a User object and adds it to the DB
+     * This method receives a User object and adds it to the DB with its password hashed
      * @param user a User object
      * @return the User object with an updated id
      * @throws UserExistsException if the user's email is already in use
@@ -37,19 +50,37 @@ public class ClientService {
     public User register(User user) throws UserExistsException, UnauthorizedEmailException {
         if(user.getEmail().equals("admin@admin.com"))
             throw new UserExistsException();
-        if(userRepository.existsByEmail(user.getEmail()) || user.getEmail().equals("admin@admin.com"))
+        if(credentialService.isTaken(user.getEmail(), 0))
             throw new UserExistsException();
         if(!user.getEmail().contains("@") || !user.getEmail().contains("."))
             throw new UnauthorizedEmailException();
-        return userRepository.save(user);
+        user.setPassword(credentialService.encode(user.getPassword()));
+        try {
+            user = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            //Another registration with the same email won the unique index
+            throw new UserExistsException();
+        }
+        credentialService.remember(user);
+        return user;
     }
 
     /***
-     * This method returns a list of all the movies in the DB
+     * This method returns a list of all the movies in the DB, through the catalog cache
      * @return a list of all the movies in the DB
      */
     public List<Movie> getAllMovies(){//works
-        return this.movieRepository.findAll();
+        return catalogCache.getList("movies", movieRepository::findAll);
+    }
+
+    /***
+     * This method returns a page of the movies in the DB, ordered by id
+     * @param after the id of the last movie of the previous page (0 for the first page)
+     * @param limit the number of movies in a page, at most Keyset.MAX_LIMIT
+     * @return a page of the movies whose ids come after the given one
+     */
+    public Slice<Movie> getMovies(int after, int limit){
+        return movieRepository.findByIdGreaterThanOrderById(after, Keyset.limit(limit));
     }
 
     /***
@@ -59,7 +90,7 @@ public class ClientService {
      * @throws NoSuchMovieException if there's no movie in the DB with that id
      */
     public Movie getMovieById(int id) throws NoSuchMovieException {//works
-        return this.movieRepository.findById(id).orElseThrow(NoSuchMovieException::new);
+        return catalogCache.getMovie(id, () -> movieRepository.findById(id)).orElseThrow(NoSuchMovieException::new);
     }
 
     public List<Movie> getMoviesByGenre(Genre genre){
@@ -67,34 +98,32 @@ public class ClientService {
     }
 
     /***
-     * This method returns a list of movies that have screenings in the given city
+     * This method returns a list of movies that have upcoming screenings in the given city, with one query
      * @param city a string representing a city in which there are screenings
-     * @return a list of movies that have screenings in the given city
+     * @return a list of movies that have upcoming screenings in the given city
      */
     public List<Movie> getMoviesByCity(String city){
         if(city == null)
             return new ArrayList<>();
-        List<Cinema> halls = cinemaRepository.findByCity(city.toLowerCase());
-        if(halls.size() == 0){
-            return new ArrayList<>();
-        }
-        List<Screening> screenings = new LinkedList<>();
-        for (Cinema hall : halls) {
-            screenings.addAll(screeningRepository.findByCinemaId(hall.getId()));
-        }
-        Set<Movie> movies = new HashSet<>();
-        for(Screening screening : screenings){
-            movies.add(screening.getMovie());
-        }
-        return new LinkedList<>(movies);
+        return movieRepository.findWithUpcomingScreeningsInCity(city.toLowerCase(), new Date());
     }
 
     /***
-     * This method returns a list of all the screenings in the DB
+     * This method returns a list of all the screenings in the DB, through the catalog cache
      * @return a list of all the screenings in the DB
      */
     public List<Screening> getAllScreenings(){//works
-        return this.screeningRepository.findAll();
+        return catalogCache.getList("screenings", screeningRepository::findAll);
+    }
+
+    /***
+     * This method returns a page of the screenings in the DB, ordered by id, with one query
+     * @param after the id of the last screening of the previous page (0 for the first page)
+     * @param limit the number of screenings in a page, at most Keyset.MAX_LIMIT
+     * @return a page of the screenings whose ids come after the given one
+     */
+    public Slice<Screening> getScreenings(int after, int limit){
+        return screeningRepository.findPageAfter(after, Keyset.limit(limit));
     }
 
     /***
@@ -104,7 +133,7 @@ public class ClientService {
      * @throws NoSuchScreeningException if there's no screening in the DB with that id
      */
     public Screening getScreeningById(int id) throws NoSuchScreeningException {
-        return screeningRepository.findById(id).orElseThrow(NoSuchScreeningException::new);
+        return catalogCache.getScreening(id, () -> screeningRepository.findById(id)).orElseThrow(NoSuchScreeningException::new);
     }
 
     /***
@@ -117,48 +146,62 @@ public class ClientService {
     }
 
     /***
-     * This method returns a list of screenings whose cinema's city corresponds to the given one
+     * This method returns a list of upcoming screenings whose cinema's city corresponds to the given one, with one query
      * @param city a cinema's city
-     * @return a list of screenings whose cinema's city corresponds to the given one
+     * @return a list of upcoming screenings whose cinema's city corresponds to the given one, ordered by time
      */
     public List<Screening> getScreeningsByCity(String city){//works
-        List<Cinema> halls = cinemaRepository.findByCity(city.toLowerCase());
-        if(halls.size() == 0){
-            return new ArrayList<>();
-        }
-        List<Screening> screenings = new LinkedList<>();
-        for (Cinema hall : halls) {
-            screenings.addAll(screeningRepository.findByCinemaId(hall.getId()));
-        }
-        return screenings;
+        return screeningRepository.findUpcomingByCity(city.toLowerCase(), new Date());
     }
 
     /***
-     * This method returns a list of screenings whose movie's genre corresponds to the given one
+     * This method returns a list of upcoming screenings whose movie's genre corresponds to the given one, with one query
      * @param genre a movie's genre
-     * @return a list of screenings whose movie's genre corresponds to the given one
+     * @return a list of upcoming screenings whose movie's genre corresponds to the given one, ordered by time
      */
     public List<Screening> getScreeningsByGenre(Genre genre){//works
-        List<Movie> movies = movieRepository.findByGenre(genre);
-        if(movies.size() == 0){
-            return new ArrayList<>();
-        }
-        List<Screening> screenings = new LinkedList<>();
-        for (Movie movie : movies) {
-            screenings.addAll(screeningRepository.findByMovieId(movie.getId()));
-        }
-        return screenings;
+        return screeningRepository.findUpcomingByGenre(genre, new Date(), Pageable.unpaged());
+    }
+
+    /***
+     * This method returns a page of the upcoming screenings whose movie's genre corresponds to the given one, with one query
+     * @param genre a movie's genre
+     * @param page the page's number, starting from 0
+     * @param size the number of screenings in a page, at most MAX_PAGE_SIZE
+     * @return a page of upcoming screenings whose movie's genre corresponds to the given one, ordered by time
+     */
+    public List<Screening> getScreeningsByGenre(Genre genre, int page, int size){
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+        return screeningRepository.findUpcomingByGenre(genre, new Date(), pageable);
     }
 
     /***
-     * This method returns a list of the screening's seats corresponding to the given id
+     * This method returns a list of the screening's seats corresponding to the given id.
+     * The seats are rendered from the screening's in-memory seat map, so the DB is only used on first load.
      * @param id an Screening id
      * @return a list of the screening's seats corresponding to the given id
      */
     public List<Seat> getSeatsOfScreening(int id) throws NoSuchScreeningException, ScreeningWasScreenedException {
-        Screening screening = screeningRepository.findById(id).orElseThrow(NoSuchScreeningException::new);
-        if(screening.getTime().getTime() < new Date().getTime())
-            throw new ScreeningWasScreenedException();
-        return this.seatRepository.findByScreeningId(id);
+        return seatMapService.getSeatMap(id).getSeats();
+    }
+
+    /***
+     * This method returns the screening's seats as a compact seat map
+     * @param id a Screening id
+     * @return a CompactSeatMap with the screening's dimensions and a bitset of its reserved seats
+     */
+    public CompactSeatMap getCompactSeatsOfScreening(int id) throws NoSuchScreeningException, ScreeningWasScreenedException {
+        return seatMapService.getSeatMap(id).toCompact();
+    }
+
+    /***
+     * This method returns the best free block of adjacent seats in a screening, the one closest to the center of the cinema
+     * @param id a Screening id
+     * @param count the number of seats
+     * @return a list of adjacent free seats in one row
+     * @throws NoAvailableSeatsException if there's no free block with that number of seats
+     */
+    public List<Seat> getBestSeats(int id, int count) throws NoSuchScreeningException, ScreeningWasScreenedException, NoAvailableSeatsException {
+        return seatMapService.findBest(id, count);
     }
 }
@@ -0,0 +1,97 @@
+package com.MovieTown.services;
+
+import com.MovieTown.beans.User;
+import com.MovieTown.repositories.UserRepository;
+import com.MovieTown.utils.LruCache;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+//This service checks the users' credentials: the passwords are kept hashed and users are looked up by their unique email,
+//through a cache of the ids of the recently seen emails
+@Service
+public class CredentialService {
+
+    private UserRepository userRepository;
+    private PasswordEncoder passwordEncoder;
+    private LruCache<String, Integer> userIds;
+
+    public CredentialService(UserRepository userRepository, PasswordEncoder passwordEncoder, LruCache<String, Integer> userIds) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.userIds = userIds;
+    }
+
+    public String encode(String password){
+        return passwordEncoder.encode(password);
+    }
+
+    /***
+     * This method returns the user with the given email
+     * @param email a user's email
+     * @return a User object or null if there's no user with that email
+     */
+    public User findUser(String email){
+        Integer id = userIds.get(email);
+        if(id != null){
+            User user = userRepository.findById(id).orElse(null);
+            if(user != null && email.equals(user.getEmail()))
+                return user;
+            userIds.remove(email);
+        }
+        User user = userRepository.findByEmail(email).orElse(null);
+        if(user != null)
+            userIds.put(email, user.getId());
+        return user;
+    }
+
+    /***
+     * This method checks if an email belongs to a user other than the given one
+     * @param email an email
+     * @param userId a user's id, or 0 for a new user
+     * @return true if another user has that email and false if not
+     */
+    public boolean isTaken(String email, int userId){
+        User user = findUser(email);
+        return user != null && user.getId() != userId;
+    }
+
+    /***
+     * This method checks a user's password.
+     * Passwords that were stored before they were hashed are compared as they are, and hashed once they match.
+     * @param user a User object from the DB
+     * @param password the password to check
+     * @return true if the password is the user's and false if not
+     */
+    public boolean matches(User user, String password){
+        if(password == null)
+            return false;
+        if(isHashed(user.getPassword()))
+            return passwordEncoder.matches(password, user.getPassword());
+        if(!password.equals(user.getPassword()))
+            return false;
+        user.setPassword(encode(password));
+        userRepository.save(user);
+        return true;
+    }
+
+    public void remember(User user){
+        userIds.put(user.getEmail(), user.getId());
+    }
+
+    public void forget(String email){
+        userIds.remove(email);
+    }
+
+    public long getCacheHits(){
+        return userIds.getHits();
+    }
+
+    public long getCacheMisses(){
+        return userIds.getMisses();
+    }
+
+    //BCrypt hashes start with their version: $2a$, $2b$ or $2y$
+    private static boolean isHashed(String password){
+        return password != null && password.length() == 60 && password.startsWith("$2");
+    }
+}
@@ -0,0 +1,164 @@
+package com.MovieTown.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+//This service keeps the movies' posters as files in a directory instead of in the movies' table.
+//Every version of a poster has its own file named by the movie's id and the version, and a file is never changed once it's written,
+//so the server can send a poster's file by its path after its headers were computed from the version.
+//The catalog's JSON only carries a poster's url and the poster itself is streamed from its file.
+@Service
+public class ImageStore {
+    private static final Logger logger = LoggerFactory.getLogger(ImageStore.class);
+
+    private Path directory;
+    private JdbcTemplate jdbcTemplate;
+
+    public ImageStore(@Value("${movietown.images.dir:images}") String directory, JdbcTemplate jdbcTemplate) throws IOException {
+        this.directory = Files.createDirectories(Paths.get(directory));
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /***
+     * This method stores a new version of a movie's poster and deletes the files of its previous versions
+     * @param movieId the movie's id
+     * @param image the poster as base64, optionally as a data url ("data:image/png;base64,...")
+     * @return the poster's version, which changes when the poster's content changes
+     * @throws IOException if the poster can't be written
+     * @throws IllegalArgumentException if the poster isn't valid base64
+     */
+    public long save(int movieId, String image) throws IOException {
+        int comma = image.indexOf(',');
+        if(image.startsWith("data:") && comma > 0)
+            image = image.substring(comma + 1);
+        byte[] bytes = Base64.getMimeDecoder().decode(image);
+        long version = version(bytes);
+        //The poster is written aside and then moved to its name, so a request never streams a half written poster.
+        //A poster that's saved again with the same content already has its file, and the file is left as it is.
+        Path file = getPath(movieId, version);
+        if(!Files.exists(file)){
+            Path written = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(written, bytes);
+            Files.move(written, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+        deleteVersions(movieId, file);
+        return version;
+    }
+
+    /***
+     * This method deletes all the versions of a movie's poster
+     * @param movieId the movie's id
+     */
+    public void delete(int movieId) {
+        deleteVersions(movieId, null);
+    }
+
+    /***
+     * This method returns the file of a version of a movie's poster
+     * @param movieId the movie's id
+     * @param version the poster's version
+     * @return the poster's file, which doesn't exist if the movie has no poster of that version
+     */
+    public Path getPath(int movieId, long version) {
+        return directory.resolve(movieId + "-" + Long.toHexString(version));
+    }
+
+    //The files being written by another save end with ".tmp" and are skipped
+    private void deleteVersions(int movieId, Path keep) {
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, movieId + "-*")){
+            for(Path file : files){
+                if(!file.equals(keep) && !file.getFileName().toString().endsWith(".tmp"))
+                    Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            logger.warn("Couldn't delete the old posters of movie {}: {}", movieId, e.getMessage());
+        }
+    }
+
+    //A CRC32C of the poster's content and its length
+    private static long version(byte[] bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        return crc.getValue() << 32 | bytes.length & 0xFFFFFFFFL;
+    }
+
+    /***
+     * This method finds a poster's media type by the first bytes of its file
+     * @param channel the poster's file
+     * @return the poster's media type
+     * @throws IOException if the file can't be read
+     */
+    public static String contentType(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(12);
+        while(head.hasRemaining() && channel.read(head, head.position()) > 0);
+        byte[] b = head.array();
+        if(b[0] == (byte) 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G')
+            return "image/png";
+        if(b[0] == (byte) 0xFF && b[1] == (byte) 0xD8)
+            return "image/jpeg";
+        if(b[0] == 'G' && b[1] == 'I' && b[2] == 'F')
+            return "image/gif";
+        if(b[0] == 'R' && b[1] == 'I' && b[2] == 'F' && b[3] == 'F' && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P')
+            return "image/webp";
+        return "application/octet-stream";
+    }
+
+    /***
+     * This method moves the posters that are still kept in the movies' table into the image store,
+     * and renames the posters that were stored in a file named by the movie's id alone to their versions' names.
+     * It runs once the server is up, after the movies' table got its image version column.
+     * The posters are read one at a time, so the migration never holds more than one of them in memory.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        renameUnversioned();
+        List<Integer> ids;
+        try {
+            ids = jdbcTemplate.queryForList("SELECT `id` FROM `movies` WHERE `image` IS NOT NULL", Integer.class);
+        } catch (DataAccessException e) {
+            //The movies' table was created after the posters left it, so there's nothing to migrate
+            return;
+        }
+        for(int id : ids){
+            try {
+                String image = jdbcTemplate.queryForObject("SELECT `image` FROM `movies` WHERE `id` = ?", String.class, id);
+                Long version = image == null || image.isBlank() ? null : save(id, image);
+                jdbcTemplate.update("UPDATE `movies` SET `image` = NULL, `image_version` = ? WHERE `id` = ?", version, id);
+            } catch (IOException | IllegalArgumentException | DataAccessException e) {
+                logger.warn("Couldn't migrate the poster of movie {}: {}", id, e.getMessage());
+            }
+        }
+        if(!ids.isEmpty())
+            logger.info("Migrated {} posters to {}", ids.size(), directory);
+    }
+
+    //The version of a poster is computed from its content the same way, so it matches the version in the movies' table
+    private void renameUnversioned() {
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, file -> file.getFileName().toString().matches("\\d+"))){
+            for(Path file : files){
+                int movieId = Integer.parseInt(file.getFileName().toString());
+                Files.move(file, getPath(movieId, version(Files.readAllBytes(file))), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Couldn't rename the unversioned posters: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.MovieTown.services;
+
+import com.MovieTown.beans.ImageSize;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+//This service resizes the movies' posters into small JPEG variants, so clients that show a small tile don't download the whole poster.
+//A poster is decoded once and all its variants are made from it on a bounded pool of background threads.
+//The variants are kept on disk next to the posters, and the least recently served ones are deleted beyond a total size.
+@Service
+public class ImageVariants {
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariants.class);
+
+    private ImageStore imageStore;
+    private Path directory;
+    private float quality;
+    private long maxBytes;
+    private long maxPixels;
+    private ThreadPoolExecutor executor;
+    //The movies whose variants are being made, so a poster isn't resized twice at once
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+    //The movies whose posters can't be decoded, they aren't tried again until their posters are updated
+    private final Set<Integer> unsupported = ConcurrentHashMap.newKeySet();
+    //The current version of every movie's poster, so variants of a poster that was replaced meanwhile are thrown away
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+    //The variants' files and sizes from the least to the most recently served
+    private final LinkedHashMap<Path, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    public ImageVariants(ImageStore imageStore, @Value("${movietown.images.variants-dir:images/variants}") String directory,
+                         @Value("${movietown.images.variants-max-mb:256}") long maxMegabytes,
+                         @Value("${movietown.images.quality:0.8}") float quality,
+                         @Value("${movietown.images.threads:2}") int threads,
+                         @Value("${movietown.images.queue:64}") int queueSize,
+                         @Value("${movietown.images.max-pixels:25000000}") long maxPixels) throws IOException {
+        this.imageStore = imageStore;
+        this.maxPixels = maxPixels;
+        this.directory = Files.createDirectories(Path.of(directory));
+        this.maxBytes = maxMegabytes * 1024 * 1024;
+        this.quality = quality;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "image-variants");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        load();
+    }
+
+    /***
+     * This method deletes a movie's variants and makes new ones from a new version of its poster in the background.
+     * The variants are named by the poster's version, so a new poster's url never gets an old poster's variant.
+     * @param movieId the movie's id
+     * @param version the new version of the movie's poster
+     */
+    public void update(int movieId, long version){
+        versions.put(movieId, version);
+        unsupported.remove(movieId);
+        deleteVariants(movieId);
+        submit(movieId, version);
+    }
+
+    /***
+     * This method returns the file of a poster's variant and marks it as recently served.
+     * If the variant wasn't made yet it's made in the background.
+     * @param movieId the movie's id
+     * @param version the version of the movie's poster
+     * @param size the variant's size
+     * @return the variant's file, or null if there's no such variant yet
+     */
+    public Path get(int movieId, long version, ImageSize size){
+        Path file = getPath(movieId, version, size);
+        synchronized (files) {
+            if(files.get(file) != null)
+                return file;
+        }
+        //After a restart the versions are learned from the requests
+        versions.putIfAbsent(movieId, version);
+        if(!unsupported.contains(movieId) && Files.exists(imageStore.getPath(movieId, version)))
+            submit(movieId, version);
+        return null;
+    }
+
+    /***
+     * This method deletes a movie's variants
+     * @param movieId the movie's id
+     */
+    public void delete(int movieId){
+        versions.remove(movieId);
+        unsupported.remove(movieId);
+        deleteVariants(movieId);
+    }
+
+    public long getGenerated() {
+        return generated.get();
+    }
+
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    public long getTotalBytes() {
+        synchronized (files) {
+            return totalBytes;
+        }
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    private void submit(int movieId, long version){
+        if(!pending.add(movieId))
+            return;
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(movieId, version);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Couldn't resize the poster of movie {}: {}", movieId, e.getMessage());
+                } finally {
+                    pending.remove(movieId);
+                }
+                //The poster was replaced while it was resized, so the new poster is resized
+                Long current = versions.get(movieId);
+                if(current != null && current != version)
+                    submit(movieId, current);
+            });
+        } catch (RejectedExecutionException e) {
+            //When the queue is full the poster is dropped, its variants are made the next time one of them is requested
+            pending.remove(movieId);
+        }
+    }
+
+    private void generate(int movieId, long version) throws IOException {
+        if(!isCurrent(movieId, version))
+            return;
+        BufferedImage poster = read(movieId, version);
+        for(ImageSize size : ImageSize.values()){
+            BufferedImage variant = resize(poster, size.getWidth());
+            Path file = getPath(movieId, version, size);
+            Path written = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.deleteIfExists(written);
+            try {
+                write(variant, written);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(written);
+                throw e;
+            }
+            if(!isCurrent(movieId, version)){
+                Files.deleteIfExists(written);
+                return;
+            }
+            Files.move(written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            add(file, Files.size(file));
+            generated.incrementAndGet();
+            if(!isCurrent(movieId, version)){
+                deleteVariants(movieId, version);
+                return;
+            }
+        }
+    }
+
+    private boolean isCurrent(int movieId, long version){
+        Long current = versions.get(movieId);
+        return current != null && current == version;
+    }
+
+    //The variants of all the versions of a movie's poster, or of one version, are removed from the index and deleted
+    private void deleteVariants(int movieId){
+        deleteVariants(movieId + "-");
+    }
+
+    private void deleteVariants(int movieId, long version){
+        deleteVariants(movieId + "-" + Long.toHexString(version) + "-");
+    }
+
+    private void deleteVariants(String prefix){
+        List<Path> deleted = new ArrayList<>();
+        synchronized (files) {
+            Iterator<Map.Entry<Path, Long>> iterator = files.entrySet().iterator();
+            while(iterator.hasNext()){
+                Map.Entry<Path, Long> entry = iterator.next();
+                if(entry.getKey().getFileName().toString().startsWith(prefix)){
+                    totalBytes -= entry.getValue();
+                    deleted.add(entry.getKey());
+                    iterator.remove();
+                }
+            }
+        }
+        for(Path file : deleted){
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Couldn't delete {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    //The poster's dimensions are read from its header before it's decoded, so a huge poster is rejected without allocating its pixels.
+    //A large poster is subsampled while it's decoded, to no less than twice the largest variant's width, as the variants don't need more.
+    private BufferedImage read(int movieId, long version) throws IOException {
+        try(ImageInputStream in = new FileImageInputStream(imageStore.getPath(movieId, version).toFile())){
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if(!readers.hasNext()){
+                unsupported.add(movieId);
+                throw new IOException("The poster's format isn't supported");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if((long) width * height > maxPixels){
+                    unsupported.add(movieId);
+                    throw new IOException("The poster has " + width + "x" + height + " pixels, more than " + maxPixels);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(width / (2 * maxWidth()), 1);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static int maxWidth(){
+        int width = 0;
+        for(ImageSize size : ImageSize.values()){
+            width = Math.max(width, size.getWidth());
+        }
+        return width;
+    }
+
+    //The poster is halved until it's less than twice the width, so the bilinear steps don't skip pixels and the variant isn't aliased
+    private static BufferedImage resize(BufferedImage image, int width){
+        width = Math.min(width, image.getWidth());
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        do {
+            int nextWidth = Math.max(currentWidth / 2, width);
+            int nextHeight = Math.max((int) ((long) image.getHeight() * nextWidth / image.getWidth()), 1);
+            //JPEG has no transparency, so transparent posters are drawn on white
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, nextWidth, nextHeight, Color.WHITE, null);
+            graphics.dispose();
+            current = next;
+            currentWidth = nextWidth;
+        } while(currentWidth > width);
+        return current;
+    }
+
+    private void write(BufferedImage image, Path file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        try(ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())){
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void add(Path file, long bytes){
+        List<Path> deleted = new ArrayList<>();
+        synchronized (files) {
+            Long previous = files.put(file, bytes);
+            totalBytes += bytes - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<Path, Long>> iterator = files.entrySet().iterator();
+            while(totalBytes > maxBytes && iterator.hasNext()){
+                Map.Entry<Path, Long> eldest = iterator.next();
+                if(eldest.getKey().equals(file))
+                    continue;
+                totalBytes -= eldest.getValue();
+                deleted.add(eldest.getKey());
+                iterator.remove();
+            }
+        }
+        for(Path path : deleted){
+            try {
+                Files.deleteIfExists(path);
+                evicted.incrementAndGet();
+            } catch (IOException e) {
+                logger.warn("Couldn't delete {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    //The variants from before a restart are reloaded from the oldest to the newest, as the order they were served in isn't kept
+    //A variant whose writing was cut off by a crash or an error is left as a ".tmp" file, and it's deleted here
+    private void load() throws IOException {
+        List<Path> found = new ArrayList<>();
+        List<Path> partial = new ArrayList<>();
+        try(Stream<Path> paths = Files.list(directory)){
+            paths.forEach(path -> {
+                String name = path.getFileName().toString();
+                if(name.endsWith(".jpg"))
+                    found.add(path);
+                else if(name.endsWith(".jpg.tmp"))
+                    partial.add(path);
+            });
+        }
+        for(Path path : partial){
+            Files.deleteIfExists(path);
+        }
+        Map<Path, FileTime> modified = new HashMap<>();
+        for(Path path : found){
+            modified.put(path, Files.getLastModifiedTime(path));
+        }
+        found.sort(Comparator.comparing(modified::get));
+        for(Path path : found){
+            add(path, Files.size(path));
+        }
+    }
+
+    //A variant's file is named by its poster's version, so it's never replaced by another poster's variant
+    private Path getPath(int movieId, long version, ImageSize size){
+        return directory.resolve(movieId + "-" + Long.toHexString(version) + "-" + size.name().toLowerCase() + ".jpg");
+    }
+}
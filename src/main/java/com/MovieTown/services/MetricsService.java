@@ -0,0 +1,71 @@
+package com.MovieTown.services;
+
+import com.MovieTown.beans.VerifiedToken;
+import com.MovieTown.filters.RateLimitFilter;
+import com.MovieTown.filters.RouteGroup;
+import com.MovieTown.utils.LruCache;
+import com.MovieTown.utils.SessionExpiry;
+import com.MovieTown.utils.SessionStore;
+import com.MovieTown.utils.TimingWheel;
+import com.MovieTown.utils.TokenRevocations;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//This service collects the server's runtime metrics for the admin
+@Service
+public class MetricsService {
+
+    private SessionStore sessions;
+    private SessionExpiry sessionExpiry;
+    private SeatHoldService seatHoldService;
+    private TimingWheel timingWheel;
+    private LruCache<Long, VerifiedToken> verifiedTokens;
+    private TokenRevocations revocations;
+    private CredentialService credentialService;
+    private RateLimitFilter rateLimitFilter;
+    private CatalogCache catalogCache;
+
+    public MetricsService(SessionStore sessions, SessionExpiry sessionExpiry, SeatHoldService seatHoldService, TimingWheel timingWheel,
+                          LruCache<Long, VerifiedToken> verifiedTokens, TokenRevocations revocations, CredentialService credentialService,
+                          RateLimitFilter rateLimitFilter, CatalogCache catalogCache) {
+        this.sessions = sessions;
+        this.sessionExpiry = sessionExpiry;
+        this.seatHoldService = seatHoldService;
+        this.timingWheel = timingWheel;
+        this.verifiedTokens = verifiedTokens;
+        this.revocations = revocations;
+        this.credentialService = credentialService;
+        this.rateLimitFilter = rateLimitFilter;
+        this.catalogCache = catalogCache;
+    }
+
+    /***
+     * This method returns the current metrics by name
+     * @return a map of metric names to values
+     */
+    public Map<String, Number> getMetrics(){
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("sessions.active", sessions.size());
+        metrics.put("sessions.expired", sessionExpiry.getExpired());
+        metrics.put("sessions.expiryQueue", sessionExpiry.getScheduled());
+        metrics.put("holds.active", seatHoldService.getNumOfHolds());
+        metrics.put("timingWheel.pending", timingWheel.getPending());
+        metrics.put("timingWheel.expired", timingWheel.getExpired());
+        metrics.put("tokens.cached", verifiedTokens.size());
+        metrics.put("tokens.cacheHits", verifiedTokens.getHits());
+        metrics.put("tokens.cacheMisses", verifiedTokens.getMisses());
+        metrics.put("tokens.revoked", revocations.size());
+        metrics.put("tokens.revocationBloomHits", revocations.getBloomHits());
+        metrics.put("tokens.revocationFalsePositives", revocations.getFalsePositives());
+        metrics.put("users.cacheHits", credentialService.getCacheHits());
+        metrics.put("users.cacheMisses", credentialService.getCacheMisses());
+        metrics.put("rateLimit.buckets", rateLimitFilter.getNumOfBuckets());
+        rateLimitFilter.getRejected().forEach((group, rejected) -> metrics.put("rateLimit.rejected." + group.name().toLowerCase(), rejected));
+        metrics.put("catalog.cached", catalogCache.size());
+        metrics.put("catalog.hits", catalogCache.getHits());
+        metrics.put("catalog.misses", catalogCache.getMisses());
+        return metrics;
+    }
+}
@@ -0,0 +1,125 @@
+package com.MovieTown.services;
+
+import com.MovieTown.beans.Order;
+import com.MovieTown.beans.SeatHold;
+import com.MovieTown.beans.User;
+import com.MovieTown.exceptions.*;
+import com.MovieTown.utils.TimingWheel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+//This service holds blocks of seats for users for a limited time, until they are confirmed as orders
+@Service
+public class SeatHoldService {
+
+    private SeatMapService seatMapService;
+    private TimingWheel timingWheel;
+    private long holdMillis;
+    private int maxSeats;
+    private Map<String, SeatHold> holds = new ConcurrentHashMap<>();
+    //The number of seats every user holds, so a single user can't hold a whole screening
+    private Map<Integer, Integer> heldSeats = new ConcurrentHashMap<>();
+
+    public SeatHoldService(SeatMapService seatMapService, TimingWheel timingWheel, @Value("${movietown.holds.minutes:10}") long holdMinutes,
+                           @Value("${movietown.holds.max-seats:10}") int maxSeats) {
+        this.seatMapService = seatMapService;
+        this.timingWheel = timingWheel;
+        this.holdMillis = holdMinutes * 60000L;//60000L is 1 minute in long
+        this.maxSeats = maxSeats;
+    }
+
+    /***
+     * This method holds a block of adjacent seats in a row for a user.
+     * While the hold is active the seats appear as reserved, and when it expires they are freed.
+     * @param userId the id of the user who holds the seats
+     * @param screeningId a screening id
+     * @param row the block's row
+     * @param firstColumn the block's first column
+     * @param count the number of seats in the block
+     * @return a SeatHold object
+     * @throws NoSuchScreeningException if there's no screening in the DB with that id
+     * @throws ScreeningWasScreenedException if the screening's time has passed
+     * @throws NoSuchSeatException if the block is not inside the screening's cinema
+     * @throws SeatIsReservedException if any of the block's seats is reserved or held
+     * @throws TooManyHoldsException if the user would hold more seats than allowed
+     */
+    public SeatHold hold(int userId, int screeningId, int row, int firstColumn, int count)
+            throws NoSuchScreeningException, ScreeningWasScreenedException, NoSuchSeatException, SeatIsReservedException, TooManyHoldsException {
+        if(heldSeats.merge(userId, count, Integer::sum) > maxSeats){
+            unhold(userId, count);
+            throw new TooManyHoldsException(maxSeats);
+        }
+        SeatHold hold = new SeatHold(UUID.randomUUID().toString(), userId, screeningId, row, firstColumn, count,
+                new Date(System.currentTimeMillis() + holdMillis));
+        try {
+            seatMapService.hold(hold);
+        } catch (NoSuchScreeningException | ScreeningWasScreenedException | NoSuchSeatException | SeatIsReservedException e) {
+            unhold(userId, count);
+            throw e;
+        }
+        holds.put(hold.getId(), hold);
+        hold.setTimeout(timingWheel.schedule(() -> expire(hold), holdMillis));
+        return hold;
+    }
+
+    /***
+     * This method turns a user's hold into an order
+     * @param id a hold id
+     * @param user the User who holds the seats
+     * @return the saved Order object
+     * @throws NoSuchHoldException if there's no active hold with that id
+     * @throws UnauthorizedException if the hold belongs to another user
+     * @throws NoSuchScreeningException if the hold's screening was deleted
+     * @throws SeatIsReservedException if the seats were reserved in the DB meanwhile
+     */
+    public Order confirm(String id, User user) throws NoSuchHoldException, UnauthorizedException, NoSuchScreeningException, SeatIsReservedException {
+        SeatHold hold = take(id, user.getId());
+        return seatMapService.reserveHeld(user, hold);
+    }
+
+    /***
+     * This method releases a user's hold and frees its seats
+     * @param id a hold id
+     * @param userId the id of the user who holds the seats
+     * @throws NoSuchHoldException if there's no active hold with that id
+     * @throws UnauthorizedException if the hold belongs to another user
+     */
+    public void release(String id, int userId) throws NoSuchHoldException, UnauthorizedException {
+        SeatHold hold = take(id, userId);
+        seatMapService.release(hold);
+    }
+
+    public int getNumOfHolds(){
+        return holds.size();
+    }
+
+    //Whoever removes the hold from the map owns its seats: the expiry, a confirmation or a release
+    private SeatHold take(String id, int userId) throws NoSuchHoldException, UnauthorizedException {
+        SeatHold hold = holds.get(id);
+        if(hold == null)
+            throw new NoSuchHoldException();
+        if(hold.getUserId() != userId)
+            throw new UnauthorizedException();
+        if(!holds.remove(id, hold))
+            throw new NoSuchHoldException();
+        hold.getTimeout().cancel();
+        unhold(userId, hold.getNumOfSeats());
+        return hold;
+    }
+
+    private void expire(SeatHold hold){
+        if(holds.remove(hold.getId(), hold)){
+            unhold(hold.getUserId(), hold.getNumOfSeats());
+            seatMapService.release(hold);
+        }
+    }
+
+    private void unhold(int userId, int count){
+        heldSeats.computeIfPresent(userId, (id, seats) -> seats == count ? null : seats - count);
+    }
+}
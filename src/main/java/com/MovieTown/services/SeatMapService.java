@@ -0,0 +1,396 @@
+package com.MovieTown.services;
+
+import com.MovieTown.beans.Order;
+import com.MovieTown.beans.Screening;
+import com.MovieTown.beans.Seat;
+import com.MovieTown.beans.SeatHold;
+import com.MovieTown.beans.User;
+import com.MovieTown.exceptions.NoAvailableSeatsException;
+import com.MovieTown.exceptions.NoSuchScreeningException;
+import com.MovieTown.exceptions.NoSuchSeatException;
+import com.MovieTown.exceptions.ScreeningWasScreenedException;
+import com.MovieTown.exceptions.SeatIsReservedException;
+import com.MovieTown.repositories.OrderRepository;
+import com.MovieTown.repositories.ScreeningRepository;
+import com.MovieTown.repositories.SeatRepository;
+import com.MovieTown.utils.SeatMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+//This service keeps the seat maps of the screenings in memory, each one is loaded from the DB once.
+//In the dense storage mode every seat of a screening has a row in the DB, in the sparse mode only the reserved ones do
+//and the free seats come from the cinema's dimensions.
+@Service
+public class SeatMapService {
+
+    private ScreeningRepository screeningRepository;
+    private SeatRepository seatRepository;
+    private OrderRepository orderRepository;
+    private boolean sparse;
+    private Map<Integer, SeatMap> seatMaps = new ConcurrentHashMap<>();
+    //The blocks held for users in every screening. They aren't in the DB, so they are claimed again when a seat map is reloaded.
+    //A screening's set is also the lock that keeps a reload from missing a hold that's claimed or released meanwhile.
+    private Map<Integer, Set<SeatHold>> holds = new ConcurrentHashMap<>();
+
+    public SeatMapService(ScreeningRepository screeningRepository, SeatRepository seatRepository, OrderRepository orderRepository,
+                          @Value("${movietown.seats.storage:dense}") String storage) {
+        this.screeningRepository = screeningRepository;
+        this.seatRepository = seatRepository;
+        this.orderRepository = orderRepository;
+        this.sparse = storage.equalsIgnoreCase("sparse");
+    }
+
+    /***
+     * This method adds the seats of a new screening to the DB. In the sparse storage mode nothing is added.
+     * @param screening a Screening object with an id
+     * @param numOfRows the number of rows in the screening's cinema
+     * @param numOfColumns the number of columns in the screening's cinema
+     * @return the number of added seats
+     */
+    public int addSeats(Screening screening, int numOfRows, int numOfColumns){
+        return sparse ? 0 : seatRepository.insertSeats(screening.getId(), numOfRows, numOfColumns);
+    }
+
+    /***
+     * This method cancels an order: all its seats are freed with one statement and the order is deleted in the same transaction.
+     * In the sparse storage mode the seats' rows are deleted. The seat map is updated once the transaction commits.
+     * If the order was already cancelled by a concurrent request, nothing is changed.
+     * @param order an Order object with its seats
+     * @return true if the order was cancelled by this call
+     */
+    @Transactional
+    public boolean cancel(Order order){
+        //The seats' rows are locked by the first cancel, so a concurrent cancel of the same order waits and then frees nothing
+        int freed = sparse ? seatRepository.deleteByOrderId(order.getId()) : seatRepository.freeByOrderId(order.getId());
+        if(orderRepository.deleteByIds(Collections.singletonList(order.getId())) == 0)
+            return false;
+        if(freed > 0 && !order.getSeats().isEmpty() && order.getSeats().get(0).getScreening() != null){
+            int screeningId = order.getSeats().get(0).getScreening().getId();
+            //The catalog cache's screenings pick up the new count once they are reloaded
+            screeningRepository.addReservedSeats(screeningId, -freed);
+        }
+        afterCommit(() -> markFree(order.getSeats()));
+        return true;
+    }
+
+    /***
+     * This method deletes all the seats of a screening and the orders they belong to, with one statement each
+     * @param screeningId a screening id
+     * @return the number of deleted orders
+     */
+    @Transactional
+    public int deleteSeats(int screeningId){
+        List<Integer> orderIds = seatRepository.findOrderIdsByScreeningId(screeningId);
+        seatRepository.deleteByScreeningId(screeningId);
+        if(!orderIds.isEmpty())
+            orderRepository.deleteByIds(orderIds);
+        afterCommit(() -> forget(screeningId));
+        return orderIds.size();
+    }
+
+    /***
+     * This method returns the seat map of an upcoming screening, loading it from the DB on first use
+     * @param screeningId a screening id
+     * @return the screening's seat map
+     * @throws NoSuchScreeningException if there's no screening in the DB with that id
+     * @throws ScreeningWasScreenedException if the screening's time has passed
+     */
+    public SeatMap getSeatMap(int screeningId) throws NoSuchScreeningException, ScreeningWasScreenedException {
+        SeatMap seatMap = loadSeatMap(screeningId);
+        if(seatMap.getScreening().getTime().getTime() < System.currentTimeMillis())
+            throw new ScreeningWasScreenedException();
+        return seatMap;
+    }
+
+    /***
+     * This method reserves a block of adjacent seats in a row for a user and saves the order in one transaction.
+     * The block is first claimed in the seat map, so buyers racing for the same seats fail fast without any lock,
+     * and then in the DB with an update that only matches free seats.
+     * @param user the User who orders the seats
+     * @param screeningId a screening id
+     * @param row the block's row
+     * @param firstColumn the block's first column
+     * @param count the number of seats in the block
+     * @return the saved Order object
+     * @throws NoSuchScreeningException if there's no screening in the DB with that id
+     * @throws ScreeningWasScreenedException if the screening's time has passed
+     * @throws NoSuchSeatException if the block is not inside the screening's cinema
+     * @throws SeatIsReservedException if any of the block's seats is already reserved
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Order reserve(User user, int screeningId, int row, int firstColumn, int count)
+            throws NoSuchScreeningException, ScreeningWasScreenedException, NoSuchSeatException, SeatIsReservedException {
+        SeatMap seatMap = claim(screeningId, row, firstColumn, count);
+        releaseOnRollback(seatMap, row, firstColumn, count);
+        return saveOrder(user, seatMap, row, firstColumn, count);
+    }
+
+    /***
+     * This method finds the best free block of adjacent seats in a screening, closest to the center of the cinema
+     * @param screeningId a screening id
+     * @param count the number of seats in the block
+     * @return the block's seats
+     * @throws NoSuchScreeningException if there's no screening in the DB with that id
+     * @throws ScreeningWasScreenedException if the screening's time has passed
+     * @throws NoAvailableSeatsException if there's no free block of that size
+     */
+    public List<Seat> findBest(int screeningId, int count)
+            throws NoSuchScreeningException, ScreeningWasScreenedException, NoAvailableSeatsException {
+        SeatMap seatMap = getSeatMap(screeningId);
+        int[] block = seatMap.findBestBlock(count);
+        if(block == null)
+            throw new NoAvailableSeatsException();
+        List<Seat> seats = new ArrayList<>(count);
+        for(int j = block[1]; j < block[1] + count; j++){
+            seats.add(seatMap.getSeat(block[0], j));
+        }
+        return seats;
+    }
+
+    /***
+     * This method finds the best free block of adjacent seats in a screening and reserves it for a user in one transaction.
+     * If another buyer takes the block first, the next best block is tried.
+     * @param user the User who orders the seats
+     * @param screeningId a screening id
+     * @param count the number of seats in the block
+     * @return the saved Order object
+     * @throws NoSuchScreeningException if there's no screening in the DB with that id
+     * @throws ScreeningWasScreenedException if the screening's time has passed
+     * @throws NoAvailableSeatsException if there's no free block of that size
+     * @throws SeatIsReservedException if the block is already reserved in the DB
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Order reserveBest(User user, int screeningId, int count)
+            throws NoSuchScreeningException, ScreeningWasScreenedException, NoAvailableSeatsException, SeatIsReservedException {
+        SeatMap seatMap = getSeatMap(screeningId);
+        while(true){
+            int[] block = seatMap.findBestBlock(count);
+            if(block == null)
+                throw new NoAvailableSeatsException();
+            if(seatMap.tryReserve(block[0], block[1], count)){
+                releaseOnRollback(seatMap, block[0], block[1], count);
+                return saveOrder(user, seatMap, block[0], block[1], count);
+            }
+        }
+    }
+
+    /***
+     * This method saves an order for a held block, whose seats are already claimed in the seat map.
+     * The hold keeps its seats until the transaction completes, and if the order can't be saved they are freed.
+     * @param user the User who orders the seats
+     * @param hold the SeatHold object of the block
+     * @return the saved Order object
+     * @throws NoSuchScreeningException if there's no screening in the DB with that id
+     * @throws SeatIsReservedException if the hold's seats were lost or are already reserved in the DB
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Order reserveHeld(User user, SeatHold hold) throws NoSuchScreeningException, SeatIsReservedException {
+        SeatMap seatMap = loadSeatMap(hold.getScreeningId());
+        Set<SeatHold> held = heldIn(hold.getScreeningId());
+        //A reloaded seat map drops a hold whose seats were taken meanwhile
+        if(!held.contains(hold))
+            throw new SeatIsReservedException();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                //Once the order is committed its seats are reserved in the DB, so the hold doesn't need to keep them
+                if(status == STATUS_COMMITTED){
+                    synchronized (held) {
+                        held.remove(hold);
+                    }
+                } else
+                    release(hold);
+            }
+        });
+        return saveOrder(user, seatMap, hold.getRow(), hold.getFirstColumn(), hold.getNumOfSeats());
+    }
+
+    /***
+     * This method claims a held block of seats in the screening's seat map and keeps the hold,
+     * so its seats stay claimed when the seat map is reloaded from the DB
+     * @param hold the SeatHold object of the block
+     * @throws NoSuchScreeningException if there's no screening in the DB with that id
+     * @throws ScreeningWasScreenedException if the screening's time has passed
+     * @throws NoSuchSeatException if the block is not inside the screening's cinema
+     * @throws SeatIsReservedException if any of the block's seats is already taken
+     */
+    public void hold(SeatHold hold)
+            throws NoSuchScreeningException, ScreeningWasScreenedException, NoSuchSeatException, SeatIsReservedException {
+        //The screening's hold set is only made once its seat map was loaded, so unknown screenings don't get one
+        getSeatMap(hold.getScreeningId());
+        Set<SeatHold> held = heldIn(hold.getScreeningId());
+        synchronized (held) {
+            //The screening was deleted meanwhile and its hold set was dropped
+            if(holds.get(hold.getScreeningId()) != held)
+                throw new NoSuchScreeningException();
+            claim(hold.getScreeningId(), hold.getRow(), hold.getFirstColumn(), hold.getNumOfSeats());
+            held.add(hold);
+        }
+    }
+
+    /***
+     * This method frees a held block of seats in the screening's seat map.
+     * Nothing is freed if the hold's seats were already lost, so the seats of another buyer are never freed.
+     * @param hold the SeatHold object of the block
+     */
+    public void release(SeatHold hold){
+        Set<SeatHold> held = holds.get(hold.getScreeningId());
+        if(held == null)
+            return;
+        synchronized (held) {
+            SeatMap seatMap = seatMaps.get(hold.getScreeningId());
+            if(held.remove(hold) && seatMap != null)
+                seatMap.release(hold.getRow(), hold.getFirstColumn(), hold.getNumOfSeats());
+        }
+    }
+
+    /***
+     * This method atomically claims a block of adjacent seats in a row of the screening's seat map, without the DB
+     * @param screeningId a screening id
+     * @param row the block's row
+     * @param firstColumn the block's first column
+     * @param count the number of seats in the block
+     * @return the screening's seat map
+     * @throws NoSuchScreeningException if there's no screening in the DB with that id
+     * @throws ScreeningWasScreenedException if the screening's time has passed
+     * @throws NoSuchSeatException if the block is not inside the screening's cinema
+     * @throws SeatIsReservedException if any of the block's seats is already taken
+     */
+    public SeatMap claim(int screeningId, int row, int firstColumn, int count)
+            throws NoSuchScreeningException, ScreeningWasScreenedException, NoSuchSeatException, SeatIsReservedException {
+        SeatMap seatMap = getSeatMap(screeningId);
+        if(!seatMap.contains(row, firstColumn) || !seatMap.contains(row, firstColumn + count - 1))
+            throw new NoSuchSeatException();
+        if(!seatMap.tryReserve(row, firstColumn, count))
+            throw new SeatIsReservedException();
+        return seatMap;
+    }
+
+    //The block is given back to the seat map if the transaction doesn't commit
+    private static void releaseOnRollback(SeatMap seatMap, int row, int firstColumn, int count){
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status != STATUS_COMMITTED)
+                    seatMap.release(row, firstColumn, count);
+            }
+        });
+    }
+
+    private Order saveOrder(User user, SeatMap seatMap, int row, int firstColumn, int count) throws SeatIsReservedException {
+        int lastColumn = firstColumn + count - 1;
+        List<Seat> seats = new ArrayList<>(count);
+        for(int j = firstColumn; j <= lastColumn; j++){
+            seats.add(seatMap.getSeat(row, j));
+        }
+        Order order = orderRepository.save(new Order(user, seats));
+        int screeningId = seatMap.getScreening().getId();
+        int reserved;
+        try {
+            reserved = sparse ? seatRepository.insertReservedSeats(order.getId(), screeningId, row, firstColumn, lastColumn)
+                    : seatRepository.reserveSeats(order.getId(), screeningId, row, firstColumn, lastColumn);
+        } catch (DuplicateKeyException e) {
+            throw new SeatIsReservedException();
+        }
+        if(reserved != count)
+            throw new SeatIsReservedException();
+        screeningRepository.addReservedSeats(screeningId, count);
+        return order;
+    }
+
+    private static void afterCommit(Runnable task){
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
+    }
+
+    private void markFree(List<Seat> seats){
+        for(Seat seat : seats){
+            SeatMap seatMap = seatMapOf(seat);
+            if(seatMap != null)
+                seatMap.setFree(seat.getRow(), seat.getColumn());
+        }
+    }
+
+    /***
+     * This method removes a screening's seat map, so it will be reloaded from the DB on next use.
+     * The held blocks are claimed again in the reloaded seat map.
+     * @param screeningId a screening id
+     */
+    public void evict(int screeningId){
+        seatMaps.remove(screeningId);
+    }
+
+    //A deleted screening's seat map and hold set are dropped. The set is removed under its own lock, as it's also the seat map's
+    //load lock, so a load that's in progress finishes before and a new load makes a new set.
+    private void forget(int screeningId){
+        Set<SeatHold> held = holds.get(screeningId);
+        if(held == null){
+            seatMaps.remove(screeningId);
+            return;
+        }
+        synchronized (held) {
+            seatMaps.remove(screeningId);
+            holds.remove(screeningId, held);
+        }
+    }
+
+    /***
+     * This method removes the seat maps of all the screenings that match the given condition
+     * @param condition a condition on the seat map's screening
+     */
+    public void evictIf(Predicate<Screening> condition){
+        seatMaps.values().removeIf(seatMap -> condition.test(seatMap.getScreening()));
+    }
+
+    private SeatMap seatMapOf(Seat seat){
+        if(seat.getScreening() == null)
+            return null;
+        try {
+            return loadSeatMap(seat.getScreening().getId());
+        } catch (NoSuchScreeningException e) {
+            return null;
+        }
+    }
+
+    private SeatMap loadSeatMap(int screeningId) throws NoSuchScreeningException {
+        SeatMap seatMap = seatMaps.get(screeningId);
+        if(seatMap != null)
+            return seatMap;
+        Screening screening = screeningRepository.findById(screeningId).orElseThrow(NoSuchScreeningException::new);
+        SeatMap loaded = new SeatMap(screening, seatRepository.findByScreeningId(screeningId));
+        Set<SeatHold> held = heldIn(screeningId);
+        synchronized (held) {
+            //If another thread loaded the screening meanwhile, keep its map so no update is lost
+            SeatMap existing = seatMaps.get(screeningId);
+            if(existing != null)
+                return existing;
+            //The holds are claimed before the map is shared, and a hold that no longer fits the cinema or whose seats were
+            //reserved meanwhile is dropped, so it never frees seats it doesn't own
+            held.removeIf(hold -> !loaded.contains(hold.getRow(), hold.getFirstColumn())
+                    || !loaded.contains(hold.getRow(), hold.getFirstColumn() + hold.getNumOfSeats() - 1)
+                    || !loaded.tryReserve(hold.getRow(), hold.getFirstColumn(), hold.getNumOfSeats()));
+            seatMaps.put(screeningId, loaded);
+            return loaded;
+        }
+    }
+
+    private Set<SeatHold> heldIn(int screeningId){
+        return holds.computeIfAbsent(screeningId, id -> ConcurrentHashMap.newKeySet());
+    }
+}
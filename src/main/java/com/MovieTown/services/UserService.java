@@ -3,87 +3,96 @@ package com.MovieTown.services;
 import com.MovieTown.beans.*;
 import com.MovieTown.exceptions.*;
 import com.MovieTown.repositories.*;
-import org.springframework.context.annotation.Scope;
+import com.MovieTown.utils.Keyset;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 
+//The user's service is shared by all the users' sessions, every method receives the id of the user it acts for
 @Service
-@Scope("prototype")
 public class UserService extends ClientService implements Registered{
     private UserRepository userRepository;
     private OrderRepository orderRepository;
-    private int userId;
+    private SeatHoldService seatHoldService;
 
     public UserService(MovieRepository movieRepository, ScreeningRepository screeningRepository, CinemaRepository cinemaRepository, UserRepository userRepository,
-                       SeatRepository seatRepository, UserRepository userRepository1, OrderRepository orderRepository) {
-        super(movieRepository, screeningRepository, cinemaRepository,seatRepository, userRepository);
+                       SeatRepository seatRepository, UserRepository userRepository1, OrderRepository orderRepository, SeatMapService seatMapService,
+                       SeatHoldService seatHoldService, CredentialService credentialService, CatalogCache catalogCache) {
+        super(movieRepository, screeningRepository, cinemaRepository,seatRepository, userRepository, seatMapService, credentialService, catalogCache);
         this.userRepository = userRepository1;
         this.orderRepository = orderRepository;
+        this.seatHoldService = seatHoldService;
     }
 
     /**
      * This method attempts to log in as a user.
      * @param email the email of the admin
      * @param password the password of the admin
-     * @return UserService if the login succeeded and null if it failed.
+     * @return a user's session if the login succeeded and null if it failed.
      */
-    public UserService login(String email, String password) {
-        User user = userRepository.findByEmailAndPassword(email, password);
-        if(user != null){
-            this.userId = user.getId();
-            return this;
-        }
+    public MySession login(String email, String password) {
+        User user = credentialService.findUser(email);
+        if(user != null && credentialService.matches(user, password))
+            return new MySession(user.getId(), Role.USER, System.currentTimeMillis());
         else
             return null;
     }
 
     /***
-     * This method receives a User object and updates it in the DB
+     * This method receives a User object and updates it in the DB.
+     * A new password is hashed, and without one the user keeps the current password.
+     * @param userId the user's id, the received user's id is ignored so a user can only update itself
      * @param user a User object
      * @return an updated User object
      * @throws UserExistsException if there's a user with the mail
      * @throws UnauthorizedEmailException if the received user's mail doesn't contains @ and .
+     * @throws NoSuchUserException if there's no user with the id
      */
-    public User updateUser(User user) throws UserExistsException, UnauthorizedEmailException {
+    public User updateUser(int userId, User user) throws UserExistsException, UnauthorizedEmailException, NoSuchUserException {
+        user.setId(userId);
         if(user.getEmail().equals("admin@admin.com"))
             throw new UserExistsException();
-        if(userRepository.findAll().stream().anyMatch(u -> user.getEmail().equals(u.getEmail()) && user.getId() != u.getId()))
+        if(credentialService.isTaken(user.getEmail(), user.getId()))
             throw new UserExistsException();
         if(!user.getEmail().contains("@") || !user.getEmail().contains("."))
             throw new UnauthorizedEmailException();
-        return userRepository.save(user);
+        User current = userRepository.findById(user.getId()).orElseThrow(NoSuchUserException::new);
+        if(user.getPassword() == null || user.getPassword().isEmpty())
+            user.setPassword(current.getPassword());
+        else
+            user.setPassword(credentialService.encode(user.getPassword()));
+        try {
+            user = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            throw new UserExistsException();
+        }
+        credentialService.forget(current.getEmail());
+        credentialService.remember(user);
+        return user;
     }
 
     /***
      * This method returns the user's details
+     * @param userId the user's id
      * @return a User object
-     * @throws NoSuchUserException if there's no user with the service's userId
+     * @throws NoSuchUserException if there's no user with that id
      */
-    public User getDetails() throws NoSuchUserException {
-        User user = userRepository.findById(this.userId).orElseThrow(NoSuchUserException::new);
-        user.setOrders(orderRepository.findByUserId(this.userId));
+    public User getDetails(int userId) throws NoSuchUserException {
+        User user = userRepository.findById(userId).orElseThrow(NoSuchUserException::new);
+        user.setOrders(orderRepository.findByUserId(userId));
         return user;
     }
 
-    /***
-     * This method returns a list of the screening's seats corresponding to the given id
-     * @param id an Screening id
-     * @return a list of the screening's seats corresponding to the given id
-     */
-    public List<Seat> getSeatsOfScreening(int id) throws NoSuchScreeningException, ScreeningWasScreenedException {
-        Screening screening = screeningRepository.findById(id).orElseThrow(NoSuchScreeningException::new);
-        if(screening.getTime().getTime() < new Date().getTime())
-            throw new ScreeningWasScreenedException();
-        return this.seatRepository.findByScreeningId(id);
-    }
-
     /***
      * This method returns a list of the user's orders
+     * @param userId the user's id
      * @return a list of the user's orders
      */
-    public List<Order> getUserOrders(){
-        List<Order> orders = this.orderRepository.findByUserId(this.userId);
+    public List<Order> getUserOrders(int userId){
+        List<Order> orders = this.orderRepository.findByUserId(userId);
         for(Order order : orders){
             order.setSeats(seatRepository.findByOrderId(order.getId()));
         }
@@ -91,85 +100,159 @@ public class UserService extends ClientService implements Registered{
     }
 
     /***
-     * This method returns an Order object with the given id
+     * This method returns a page of the user's orders, ordered by id, with their seats in two queries
+     * @param userId the user's id
+     * @param after the id of the last order of the previous page (0 for the first page)
+     * @param limit the number of orders in a page, at most Keyset.MAX_LIMIT
+     * @return a page of the user's orders whose ids come after the given one
+     */
+    public Slice<Order> getUserOrders(int userId, int after, int limit){
+        Slice<Integer> ids = orderRepository.findIdsByUserIdAfter(userId, after, Keyset.limit(limit));
+        List<Order> orders = ids.isEmpty() ? new ArrayList<>() : orderRepository.findWithSeatsByIdIn(ids.getContent());
+        return new SliceImpl<>(orders, ids.getPageable(), ids.hasNext());
+    }
+
+    /***
+     * This method returns the user's Order object with the given id
+     * @param userId the user's id
      * @param id an Order's io
      * @return an Order object with the given id
      * @throws NoSuchOrderException if there's no order with the given id in the DB
+     * @throws UnauthorizedException if the order is another user's
      */
-    public Order getOrderById(int id) throws NoSuchOrderException {
-        return this.orderRepository.findById(id).orElseThrow(NoSuchOrderException::new);
+    public Order getOrderById(int userId, int id) throws NoSuchOrderException, UnauthorizedException {
+        Order order = this.orderRepository.findById(id).orElseThrow(NoSuchOrderException::new);
+        if(order.getUser().getId() != userId)
+            throw new UnauthorizedException();
+        return order;
     }
 
     /***
-     * This method receives a list of seats, creates an order with those seats and adds it to the DB
+     * This method receives a list of seats, creates an order with those seats and adds it to the DB.
+     * The seats are identified by their screening, row and column, and are reserved all together or not at all.
+     * @param userId the user's id
      * @param seats al ist of Seat objects
      * @return an Order object
      * @throws SeatIsReservedException if the selected seats are reserved for another order
-     * @throws NoSuchUserException if there's no user with the service's userId
+     * @throws NoSuchUserException if there's no user with that id
      * @throws InvalidSeatsException if the seats are not in the same row or not in executive columns
+     * @throws NoSuchSeatException if no seats were selected or they are not in the screening's cinema
+     * @throws NoSuchScreeningException if there's no screening in the DB for the seats
+     * @throws ScreeningWasScreenedException if the screening's time has passed
      */
-    public Order addOrder(List<Seat> seats) throws SeatIsReservedException, NoSuchUserException, InvalidSeatsException, NoSuchSeatException {
-        if(seats.size() == 0)
-            throw new NoSuchSeatException();
-        if(seats.get(0).isReserved())
-            throw new SeatIsReservedException();
-        if(seats.size() > 1){
-            seats.sort(Comparator.comparing(Seat::getColumn));
-            int row = seats.get(0).getRow();
-            for (int i = 1; i < seats.size(); i++){
-                if(seats.get(i).getRow() != row || seats.get(i).getColumn() != seats.get(i-1).getColumn() +1)
-                    throw new InvalidSeatsException();
-                if(seats.get(i).isReserved())
-                    throw new SeatIsReservedException();
-                }
-        }
-        User user = getDetails();
-        Order order = new Order(user, seats);
-        orderRepository.save(order);
-        for(Seat seat : seats){
-            seat.setReserved();
-            seat.setOrder(order);
-            seatRepository.save(seat);
-        }
-        return order;
+    public Order addOrder(int userId, List<Seat> seats) throws SeatIsReservedException, NoSuchUserException, InvalidSeatsException, NoSuchSeatException,
+            NoSuchScreeningException, ScreeningWasScreenedException {
+        checkSeatsBlock(seats);
+        Seat first = seats.get(0);
+        User user = getDetails(userId);
+        return seatMapService.reserve(user, first.getScreening().getId(), first.getRow(), first.getColumn(), seats.size());
+    }
+
+    /***
+     * This method finds the best free block of adjacent seats in a screening and orders it for the user
+     * @param userId the user's id
+     * @param id a Screening id
+     * @param count the number of seats
+     * @return an Order object
+     * @throws NoAvailableSeatsException if there's no free block with that number of seats
+     * @throws NoSuchUserException if there's no user with that id
+     * @throws NoSuchScreeningException if there's no screening in the DB with that id
+     * @throws ScreeningWasScreenedException if the screening's time has passed
+     * @throws SeatIsReservedException if the seats were reserved meanwhile
+     */
+    public Order addBestOrder(int userId, int id, int count) throws NoAvailableSeatsException, NoSuchUserException, NoSuchScreeningException,
+            ScreeningWasScreenedException, SeatIsReservedException {
+        return seatMapService.reserveBest(getDetails(userId), id, count);
     }
 
     /***
-     * This method cancel's a user's order with the given id
+     * This method receives a list of seats and holds them for the user for a limited time.
+     * The held seats appear as reserved until the hold is confirmed, released or expires.
+     * @param userId the user's id
+     * @param seats a list of Seat objects
+     * @return a SeatHold object with the hold's id and expiry time
+     * @throws SeatIsReservedException if the selected seats are reserved or held
+     * @throws InvalidSeatsException if the seats are not in the same row or not in executive columns
+     * @throws NoSuchSeatException if no seats were selected or they are not in the screening's cinema
+     * @throws NoSuchScreeningException if there's no screening in the DB for the seats
+     * @throws ScreeningWasScreenedException if the screening's time has passed
+     * @throws TooManyHoldsException if the user would hold more seats than allowed
+     */
+    public SeatHold holdSeats(int userId, List<Seat> seats) throws SeatIsReservedException, InvalidSeatsException, NoSuchSeatException,
+            NoSuchScreeningException, ScreeningWasScreenedException, TooManyHoldsException {
+        checkSeatsBlock(seats);
+        Seat first = seats.get(0);
+        return seatHoldService.hold(userId, first.getScreening().getId(), first.getRow(), first.getColumn(), seats.size());
+    }
+
+    /***
+     * This method turns one of the user's holds into an order
+     * @param userId the user's id
+     * @param id a hold's id
+     * @return an Order object
+     * @throws NoSuchHoldException if there's no active hold with that id
+     * @throws UnauthorizedException if the hold belongs to another user
+     * @throws NoSuchUserException if there's no user with that id
+     * @throws NoSuchScreeningException if the hold's screening was deleted
+     * @throws SeatIsReservedException if the seats were reserved meanwhile
+     */
+    public Order confirmHold(int userId, String id) throws NoSuchHoldException, UnauthorizedException, NoSuchUserException, NoSuchScreeningException,
+            SeatIsReservedException {
+        return seatHoldService.confirm(id, getDetails(userId));
+    }
+
+    /***
+     * This method releases one of the user's holds and frees its seats
+     * @param userId the user's id
+     * @param id a hold's id
+     * @return a confirmation of release
+     * @throws NoSuchHoldException if there's no active hold with that id
+     * @throws UnauthorizedException if the hold belongs to another user
+     */
+    public String releaseHold(int userId, String id) throws NoSuchHoldException, UnauthorizedException {
+        seatHoldService.release(id, userId);
+        return "Hold released";
+    }
+
+    /***
+     * This method cancel's a user's order with the given id.
+     * The order's seats are freed and the order is deleted in one transaction.
+     * @param userId the user's id
      * @param id
      * @return a confirmation of cancellation
      * @throws UnauthorizedException if the user's id doesn't match the order's user's id
-     * @throws NoSuchOrderException if there's no order with that id in the DB
+     * @throws NoSuchOrderException if there's no order with that id in the DB, or it was cancelled meanwhile
      * @throws OrderCancellationException if the order is already cancelled or had been watched
      */
-    public String cancelOrder(int id) throws NoSuchOrderException, OrderCancellationException, UnauthorizedException {
+    public String cancelOrder(int userId, int id) throws NoSuchOrderException, OrderCancellationException, UnauthorizedException {
         Order order = orderRepository.findById(id).orElseThrow(NoSuchOrderException::new);
-        if(order.getUser().getId() != this.userId)
+        if(order.getUser().getId() != userId)
             throw new UnauthorizedException();
         if(order.getStatus() == Status.PAID_WATCHED)
             throw new OrderCancellationException();
-        System.out.println(order);
-        for(Seat seat : order.getSeats()){
-            seat.setFree();
-            seat.setOrder(null);
-            seatRepository.save(seat);
-        }
-        orderRepository.deleteById(id);
+        if(!seatMapService.cancel(order))
+            throw new NoSuchOrderException();
         return "Order cancelled";
     }
 
-    public int getUserId() {
-        return userId;
-    }
-
-    public void setUserId(int userId) {
-        this.userId = userId;
+    /***
+     * This method checks that the seats are a block of adjacent seats in one row of one screening, and sorts them by column
+     * @param seats a list of Seat objects
+     * @throws NoSuchSeatException if no seats were selected or they have no screening
+     * @throws InvalidSeatsException if the seats are not in the same row or not in executive columns
+     */
+    private void checkSeatsBlock(List<Seat> seats) throws NoSuchSeatException, InvalidSeatsException {
+        if(seats.size() == 0 || seats.get(0).getScreening() == null)
+            throw new NoSuchSeatException();
+        seats.sort(Comparator.comparing(Seat::getColumn));
+        int row = seats.get(0).getRow();
+        int screeningId = seats.get(0).getScreening().getId();
+        for (int i = 1; i < seats.size(); i++){
+            Seat seat = seats.get(i);
+            if(seat.getRow() != row || seat.getColumn() != seats.get(i-1).getColumn() +1
+                    || seat.getScreening() == null || seat.getScreening().getId() != screeningId)
+                throw new InvalidSeatsException();
+        }
     }
 
-    @Override
-    public String toString() {
-        return "UserService{" +
-                ", userId=" + userId +
-                '}';
-    }
 }
@@ -0,0 +1,142 @@
+package com.MovieTown.utils;
+
+import com.MovieTown.beans.ExportFormat;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+//This class writes the rows of an export straight to a stream as they are read, so an export of any size takes constant memory.
+//A row is written into a small buffer that's flushed to the stream whenever it fills up.
+public abstract class ExportWriter implements Closeable {
+
+    private static final JsonFactory jsonFactory = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    protected String[] columns;
+
+    /***
+     * This method creates a writer of the given format
+     * @param format the export's format
+     * @param out the stream the export is written to, it's left open when the writer is closed
+     * @return a writer of the given format
+     * @throws IOException if the stream can't be written
+     */
+    public static ExportWriter of(ExportFormat format, OutputStream out) throws IOException {
+        return format == ExportFormat.CSV ? new Csv(out) : new NdJson(out);
+    }
+
+    /***
+     * This method sets the names of the rows' columns, it must be called before the first row is written
+     * @param columns the columns' names
+     * @throws IOException if the stream can't be written
+     */
+    public void writeHeader(String... columns) throws IOException {
+        this.columns = columns;
+    }
+
+    /***
+     * This method writes a row
+     * @param values the row's values in the order of the columns, a value is a number, a date, a string or null
+     * @throws IOException if the stream can't be written
+     */
+    public abstract void writeRow(Object... values) throws IOException;
+
+    //One JSON object per line, written by Jackson's streaming generator
+    private static class NdJson extends ExportWriter {
+        private final JsonGenerator generator;
+        private boolean written;
+
+        private NdJson(OutputStream out) throws IOException {
+            this.generator = jsonFactory.createGenerator(out);
+            this.generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+
+        @Override
+        public void writeRow(Object... values) throws IOException {
+            generator.writeStartObject();
+            for(int i = 0; i < columns.length; i++){
+                generator.writeFieldName(columns[i]);
+                Object value = values[i];
+                if(value == null)
+                    generator.writeNull();
+                else if(value instanceof Integer || value instanceof Long)
+                    generator.writeNumber(((Number) value).longValue());
+                else if(value instanceof Date)
+                    generator.writeString(((Date) value).toInstant().toString());
+                else
+                    generator.writeString(value.toString());
+            }
+            generator.writeEndObject();
+            written = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            //The pretty printer only separates the rows, so the last row's line is ended here
+            if(written)
+                generator.writeRaw('\n');
+            generator.close();
+        }
+    }
+
+    //Comma separated values with a header line, quoted where needed
+    private static class Csv extends ExportWriter {
+        private final Writer writer;
+
+        private Csv(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void writeHeader(String... columns) throws IOException {
+            super.writeHeader(columns);
+            writeLine(columns);
+        }
+
+        @Override
+        public void writeRow(Object... values) throws IOException {
+            writeLine(values);
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+
+        private void writeLine(Object[] values) throws IOException {
+            for(int i = 0; i < values.length; i++){
+                if(i > 0)
+                    writer.write(',');
+                Object value = values[i];
+                if(value instanceof Date)
+                    writer.write(((Date) value).toInstant().toString());
+                else if(value instanceof String)
+                    writeString((String) value);
+                else if(value != null)
+                    writer.write(value.toString());
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeString(String value) throws IOException {
+            //A value that starts like a formula is prefixed, so a spreadsheet shows it instead of running it
+            if(!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0)
+                value = "'" + value;
+            if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0){
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
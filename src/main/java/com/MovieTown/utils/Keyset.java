@@ -0,0 +1,44 @@
+package com.MovieTown.utils;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+//This class helps with keyset pagination: a page is the rows whose ids come after the last id of the previous page, ordered by id.
+//Unlike an offset, the DB seeks straight to the page through the primary key, so every page costs the same however deep it is.
+public class Keyset {
+
+    public static final int MAX_LIMIT = 100;
+    //The header with the cursor of the next page, it's missing on the last page
+    public static final String NEXT_CURSOR = "X-Next-Cursor";
+
+    private Keyset() {
+    }
+
+    /***
+     * This method returns the first page of the given size, the page's rows are selected by the query's id condition
+     * @param limit the number of rows in a page, it's kept between 1 and MAX_LIMIT
+     * @return a Pageable of the first page
+     */
+    public static Pageable limit(int limit){
+        return PageRequest.of(0, Math.min(Math.max(limit, 1), MAX_LIMIT));
+    }
+
+    /***
+     * This method returns a page of rows with the cursor of the next page in its header
+     * @param slice a page of rows ordered by id
+     * @param id returns a row's id
+     * @return a response with the page's rows, and the last row's id as the next cursor if there are more rows
+     */
+    public static <T> ResponseEntity<List<T>> toResponse(Slice<T> slice, ToIntFunction<T> id){
+        List<T> rows = slice.getContent();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(slice.hasNext() && !rows.isEmpty())
+            response.header(NEXT_CURSOR, Integer.toString(id.applyAsInt(rows.get(rows.size() - 1))));
+        return response.body(rows);
+    }
+}
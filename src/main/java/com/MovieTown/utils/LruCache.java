@@ -0,0 +1,104 @@
+package com.MovieTown.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+//A bounded cache that evicts its least recently used entries.
+//The entries are split into independent stripes, each one with its own lock and its share of the capacity.
+public class LruCache<K, V> {
+
+    private final Stripe<K, V>[] stripes;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public LruCache(int capacity, int concurrency) {
+        int numOfStripes = Integer.highestOneBit(Math.max(concurrency - 1, 1)) << 1;
+        this.stripes = new Stripe[numOfStripes];
+        for(int i = 0; i < numOfStripes; i++){
+            stripes[i] = new Stripe<>(capacity <= 0 ? 0 : Math.max(capacity / numOfStripes, 1));
+        }
+        this.mask = numOfStripes - 1;
+    }
+
+    /***
+     * This method returns a cached value and marks it as recently used
+     * @param key the value's key
+     * @return the cached value or null if it's not in the cache
+     */
+    public V get(K key){
+        Stripe<K, V> stripe = stripeOf(key);
+        V value;
+        synchronized (stripe){
+            value = stripe.get(key);
+        }
+        if(value != null)
+            hits.increment();
+        else
+            misses.increment();
+        return value;
+    }
+
+    public void put(K key, V value){
+        Stripe<K, V> stripe = stripeOf(key);
+        if(stripe.capacity == 0)
+            return;
+        synchronized (stripe){
+            stripe.put(key, value);
+        }
+    }
+
+    public V remove(K key){
+        Stripe<K, V> stripe = stripeOf(key);
+        synchronized (stripe){
+            return stripe.remove(key);
+        }
+    }
+
+    public void clear(){
+        for(Stripe<K, V> stripe : stripes){
+            synchronized (stripe){
+                stripe.clear();
+            }
+        }
+    }
+
+    public int size(){
+        int size = 0;
+        for(Stripe<K, V> stripe : stripes){
+            synchronized (stripe){
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Stripe<K, V> stripeOf(K key){
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private static class Stripe<K, V> extends LinkedHashMap<K, V> {
+        private final int capacity;
+
+        private Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.MovieTown.utils;
+
+import com.MovieTown.beans.MySession;
+import com.MovieTown.beans.Role;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+//This class keeps the sessions in memory like any other store, and also logs them to a memory-mapped append-only file,
+//so they survive a restart of the server.
+//Every log record has a fixed size: its type, the session's role, user id, token's hash and last active time.
+//Touching a session isn't logged: the last active times are written when the file is compacted, which rewrites it with only the live sessions.
+public class MappedSessionStore implements SessionStore, Runnable, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MappedSessionStore.class);
+
+    private static final int MAGIC = 0x4D54534E;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 24;
+    //Record types, 0 is the end of the log since the file is filled with zeros
+    private static final byte PUT = 1, REMOVE = 2;
+
+    private final SessionStore sessions;
+    private final Path path;
+    private final long compactMillis;
+    private final int minRecords;
+    private MappedByteBuffer log;
+    private int numOfRecords;
+    private volatile boolean quit;
+
+    /***
+     * This constructor opens the sessions file and reloads its sessions into the given store
+     * @param sessions the in-memory store of the sessions
+     * @param path the sessions file
+     * @param minRecords the number of records the file has room for at least
+     * @param compactMillis the time between compactions of the file
+     * @throws IOException if the file can't be read or written
+     */
+    public MappedSessionStore(SessionStore sessions, Path path, int minRecords, long compactMillis) throws IOException {
+        this.sessions = sessions;
+        this.path = path;
+        this.minRecords = Math.max(minRecords, 1024);
+        this.compactMillis = compactMillis;
+        if(Files.exists(path) && Files.size(path) >= HEADER_SIZE)
+            load();
+        compact();
+    }
+
+    @Override
+    public void put(long tokenHash, MySession session) {
+        sessions.put(tokenHash, session);
+        append(PUT, tokenHash, session);
+    }
+
+    @Override
+    public MySession touch(long tokenHash) {
+        return sessions.touch(tokenHash);
+    }
+
+    @Override
+    public MySession get(long tokenHash) {
+        return sessions.get(tokenHash);
+    }
+
+    @Override
+    public MySession remove(long tokenHash) {
+        MySession session = sessions.remove(tokenHash);
+        if(session != null)
+            append(REMOVE, tokenHash, session);
+        return session;
+    }
+
+    /***
+     * This method logs the removal of a session that the in-memory store evicted, so it isn't reloaded after a restart
+     * @param tokenHash the evicted session's token's hash
+     * @param session the evicted session
+     */
+    public void evicted(long tokenHash, MySession session) {
+        append(REMOVE, tokenHash, session);
+    }
+
+    @Override
+    public int removeIf(Predicate<MySession> condition) {
+        List<Long> tokenHashes = new ArrayList<>();
+        sessions.forEach((tokenHash, session) -> {
+            if(condition.test(session))
+                tokenHashes.add(tokenHash);
+        });
+        int removed = 0;
+        for(long tokenHash : tokenHashes){
+            if(remove(tokenHash) != null)
+                removed++;
+        }
+        return removed;
+    }
+
+    @Override
+    public void forEach(BiConsumer<Long, MySession> action) {
+        sessions.forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return sessions.size();
+    }
+
+    /***
+     * This method runs with the server and compacts the sessions file periodically
+     */
+    @Override
+    public void run() {
+        while(! quit){
+            try {
+                Thread.sleep(compactMillis);
+                compact();
+            } catch (InterruptedException e) {
+                logger.warn("The sessions file's compaction was interrupted: {}", e.getMessage());
+            } catch (IOException e) {
+                logger.error("Couldn't compact the sessions file {}, the sessions' last active times aren't saved", path, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        quit = true;
+        compact();
+    }
+
+    /***
+     * This method rewrites the sessions file with the live sessions and their current last active times.
+     * The new file is written aside and moved over the old one, so a crash never leaves a half written file.
+     * @throws IOException if the file can't be written
+     */
+    public synchronized void compact() throws IOException {
+        int capacity = Math.max(minRecords, sessions.size() * 2);
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(compacted);
+        MappedByteBuffer buffer = map(compacted, capacity);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, capacity);
+        int[] count = {0};
+        sessions.forEach((tokenHash, session) -> {
+            if(count[0] < capacity)
+                write(buffer, count[0]++, PUT, tokenHash, session);
+        });
+        buffer.force();
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = buffer;
+        numOfRecords = count[0];
+    }
+
+    private synchronized void append(byte type, long tokenHash, MySession session){
+        try {
+            //When the file is full it's compacted, which leaves at least half of it free
+            if(numOfRecords == log.getInt(4))
+                compact();
+            if(numOfRecords < log.getInt(4))
+                write(log, numOfRecords++, type, tokenHash, session);
+        } catch (IOException e) {
+            logger.error("Couldn't log a session to {}, the change won't survive a restart", path, e);
+        }
+    }
+
+    private void load() throws IOException {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if(buffer.getInt(0) != MAGIC)
+            throw new IOException("The file " + path + " is not a sessions file");
+        int capacity = Math.min(buffer.getInt(4), (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE);
+        Role[] roles = Role.values();
+        for(int i = 0; i < capacity; i++){
+            int offset = HEADER_SIZE + i * RECORD_SIZE;
+            byte type = buffer.get(offset);
+            if(type == 0)
+                break;
+            long tokenHash = buffer.getLong(offset + 8);
+            if(type == REMOVE){
+                sessions.remove(tokenHash);
+                continue;
+            }
+            Role role = roles[buffer.get(offset + 1)];
+            sessions.put(tokenHash, new MySession(buffer.getInt(offset + 4), role, buffer.getLong(offset + 16)));
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, int capacity) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        }
+    }
+
+    //The type is written last, so a record that was cut in the middle by a crash is read as the end of the log
+    private static void write(MappedByteBuffer buffer, int index, byte type, long tokenHash, MySession session){
+        int offset = HEADER_SIZE + index * RECORD_SIZE;
+        buffer.put(offset + 1, (byte) session.getRole().ordinal());
+        buffer.putInt(offset + 4, session.getUserId());
+        buffer.putLong(offset + 8, tokenHash);
+        buffer.putLong(offset + 16, session.getLastActive());
+        buffer.put(offset, type);
+    }
+}
@@ -0,0 +1,70 @@
+package com.MovieTown.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+//A rate limit of one group of routes: a token bucket per key (a client's token or address) in a concurrent map.
+//Buckets are refilled lazily when they are used, and the idle ones are dropped by the request that grows the map past its last size.
+public class RateLimiter<K> {
+
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int MIN_SWEEP_SIZE = 1024;
+
+    private final long refillNanos;
+    private final long capacity;
+    private final Map<K, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile int sweepAt = MIN_SWEEP_SIZE;
+    private final AtomicLong rejected = new AtomicLong();
+
+    /***
+     * This constructor creates a rate limit
+     * @param perSecond the number of requests per second a key is allowed on average
+     * @param burst the number of requests a key is allowed at once
+     */
+    public RateLimiter(double perSecond, int burst) {
+        this.refillNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+        this.capacity = Math.max(burst, 1);
+    }
+
+    /***
+     * This method takes a request from the key's bucket
+     * @param key a client's key
+     * @return 0 if the request is allowed, or the nanoseconds until the key can make another request
+     */
+    public long tryAcquire(K key){
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(key);
+        if(bucket == null){
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(now));
+            if(buckets.size() > sweepAt)
+                sweep(now);
+        }
+        long wait = bucket.tryTake(now, refillNanos, capacity);
+        if(wait > 0)
+            rejected.incrementAndGet();
+        return wait;
+    }
+
+    public int size(){
+        return buckets.size();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private void sweep(long now){
+        if(!sweeping.compareAndSet(false, true))
+            return;
+        try {
+            buckets.values().removeIf(bucket -> bucket.isIdle(now, IDLE_NANOS));
+            sweepAt = Math.max(MIN_SWEEP_SIZE, buckets.size() * 2);
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
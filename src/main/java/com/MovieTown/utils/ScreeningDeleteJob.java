@@ -4,6 +4,8 @@ import com.MovieTown.beans.Screening;
 import com.MovieTown.beans.Seat;
 import com.MovieTown.repositories.ScreeningRepository;
 import com.MovieTown.repositories.SeatRepository;
+import com.MovieTown.services.CatalogCache;
+import com.MovieTown.services.SeatMapService;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
@@ -14,11 +16,16 @@ public class ScreeningDeleteJob implements Runnable{
 
     private ScreeningRepository screeningRepository;
     private SeatRepository seatRepository;
-    private boolean quit;
+    private SeatMapService seatMapService;
+    private CatalogCache catalogCache;
+    private volatile boolean quit;
 
-    public ScreeningDeleteJob(ScreeningRepository screeningRepository, SeatRepository seatRepository) {
+    public ScreeningDeleteJob(ScreeningRepository screeningRepository, SeatRepository seatRepository, SeatMapService seatMapService,
+                              CatalogCache catalogCache) {
         this.screeningRepository = screeningRepository;
         this.seatRepository = seatRepository;
+        this.seatMapService = seatMapService;
+        this.catalogCache = catalogCache;
     }
 
 
@@ -34,7 +41,11 @@ public class ScreeningDeleteJob implements Runnable{
     public void run() {
         while(! quit){
             List<Screening> screenings = screeningRepository.findByTimeLessThan(new Date(System.currentTimeMillis()));
-            screenings.forEach(screening -> screeningRepository.delete(screening));
+            screenings.forEach(screening -> {
+                seatMapService.deleteSeats(screening.getId());
+                screeningRepository.delete(screening);
+                catalogCache.evictScreening(screening.getId());
+            });
             try {
                 Thread.sleep(1000 * 60 * 60);
             } catch (InterruptedException e) {
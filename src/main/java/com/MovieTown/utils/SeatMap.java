@@ -0,0 +1,208 @@
+package com.MovieTown.utils;
+
+import com.MovieTown.beans.Cinema;
+import com.MovieTown.beans.CompactSeatMap;
+import com.MovieTown.beans.Screening;
+import com.MovieTown.beans.Seat;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//This class keeps the occupancy of a single screening as a bitset: one word per row, one bit per column
+public class SeatMap {
+
+    private final Screening screening;
+    private final int numOfRows;
+    private final int numOfColumns;
+    //Bit (column - 1) of word (row - 1) is set when the seat is reserved
+    private final AtomicLongArray occupancy;
+    //Seat ids in row-major order, so the seat map can be rendered without the DB
+    private final long[] seatIds;
+    //Grows on every change, so clients can tell if their copy of the seat map is outdated.
+    //It starts from the load time, so it keeps growing when the screening's seat map is reloaded, even after a restart,
+    //as long as there are fewer than 1024 changes per millisecond. The shift keeps it exact as a JSON number in JavaScript.
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis() << 10);
+
+    public SeatMap(Screening screening, List<Seat> seats) {
+        Cinema cinema = screening.getCinema();
+        if(cinema.getNumOfColumns() > Long.SIZE)
+            throw new IllegalArgumentException("A row can't have more than " + Long.SIZE + " columns");
+        this.screening = screening;
+        this.numOfRows = cinema.getNumOfRows();
+        this.numOfColumns = cinema.getNumOfColumns();
+        this.occupancy = new AtomicLongArray(numOfRows);
+        this.seatIds = new long[numOfRows * numOfColumns];
+        for(Seat seat : seats){
+            if(!contains(seat.getRow(), seat.getColumn()))
+                continue;
+            seatIds[index(seat.getRow(), seat.getColumn())] = seat.getId();
+            if(seat.isReserved())
+                setReserved(seat.getRow(), seat.getColumn());
+        }
+    }
+
+    public Screening getScreening() {
+        return screening;
+    }
+
+    public int getNumOfRows() {
+        return numOfRows;
+    }
+
+    public int getNumOfColumns() {
+        return numOfColumns;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /***
+     * This method checks if a row and a column are inside the screening's cinema
+     * @param row a seat's row
+     * @param column a seat's column
+     * @return true if the seat exists and false if not
+     */
+    public boolean contains(int row, int column){
+        return row >= 1 && row <= numOfRows && column >= 1 && column <= numOfColumns;
+    }
+
+    public boolean isReserved(int row, int column){
+        return (occupancy.get(row - 1) & bit(column)) != 0;
+    }
+
+    public void setReserved(int row, int column){
+        long bit = bit(column);
+        occupancy.getAndUpdate(row - 1, word -> word | bit);
+        version.incrementAndGet();
+    }
+
+    public void setFree(int row, int column){
+        long bit = bit(column);
+        occupancy.getAndUpdate(row - 1, word -> word & ~bit);
+        version.incrementAndGet();
+    }
+
+    /***
+     * This method atomically reserves a block of adjacent seats in a row.
+     * Either all the seats are reserved or none of them, without locking the screening.
+     * @param row the block's row
+     * @param firstColumn the block's first column
+     * @param count the number of seats in the block
+     * @return true if the block was free and is now reserved and false if any of its seats is taken
+     */
+    public boolean tryReserve(int row, int firstColumn, int count){
+        long mask = mask(firstColumn, count);
+        while(true){
+            long word = occupancy.get(row - 1);
+            if((word & mask) != 0)
+                return false;
+            if(occupancy.compareAndSet(row - 1, word, word | mask)){
+                version.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /***
+     * This method frees a block of adjacent seats in a row
+     * @param row the block's row
+     * @param firstColumn the block's first column
+     * @param count the number of seats in the block
+     */
+    public void release(int row, int firstColumn, int count){
+        long mask = mask(firstColumn, count);
+        occupancy.getAndUpdate(row - 1, word -> word & ~mask);
+        version.incrementAndGet();
+    }
+
+    /***
+     * This method finds the free block of adjacent seats in a row that is closest to the center of the cinema.
+     * Each row is scanned as one word: the free seats' bits are and-ed with themselves shifted, so the bits that
+     * remain set are the first columns of free blocks of the requested size.
+     * @param count the number of seats in the block
+     * @return the block's row and first column, or null if there's no such free block
+     */
+    public int[] findBestBlock(int count){
+        if(count < 1 || count > numOfColumns)
+            return null;
+        long allColumns = mask(1, numOfColumns);
+        int[] best = null;
+        long bestScore = Long.MAX_VALUE;
+        for(int i = 1; i <= numOfRows; i++){
+            long free = ~occupancy.get(i - 1) & allColumns;
+            long starts = free;
+            for(int length = 1; length < count && starts != 0; ){
+                int shift = Math.min(length, count - length);
+                starts &= starts >>> shift;
+                length += shift;
+            }
+            //Distances are doubled so the centers of even-sized rows and blocks stay integers
+            long rowDistance = 2L * i - (numOfRows + 1);
+            while(starts != 0){
+                int firstColumn = Long.numberOfTrailingZeros(starts) + 1;
+                starts &= starts - 1;
+                long columnDistance = 2L * firstColumn + count - 1 - (numOfColumns + 1);
+                long score = rowDistance * rowDistance + columnDistance * columnDistance;
+                if(score < bestScore){
+                    bestScore = score;
+                    best = new int[]{i, firstColumn};
+                }
+            }
+        }
+        return best;
+    }
+
+    public Seat getSeat(int row, int column){
+        return new Seat(seatIds[index(row, column)], row, column, isReserved(row, column), screening);
+    }
+
+    /***
+     * This method renders the screening's seats from the bitset
+     * @return a list of the screening's seats ordered by row and column
+     */
+    public List<Seat> getSeats(){
+        List<Seat> seats = new ArrayList<>(seatIds.length);
+        for(int i = 1; i <= numOfRows; i++){
+            long word = occupancy.get(i - 1);
+            for(int j = 1; j <= numOfColumns; j++){
+                seats.add(new Seat(seatIds[index(i, j)], i, j, (word & bit(j)) != 0, screening));
+            }
+        }
+        return seats;
+    }
+
+    /***
+     * This method packs the reserved seats into a compact seat map
+     * @return a CompactSeatMap with the reserved seats as a base64 bitset
+     */
+    public CompactSeatMap toCompact(){
+        long currentVersion = version.get();
+        byte[] bits = new byte[(numOfRows * numOfColumns + 7) / 8];
+        for(int i = 0; i < numOfRows; i++){
+            long word = occupancy.get(i);
+            while(word != 0){
+                int index = i * numOfColumns + Long.numberOfTrailingZeros(word);
+                bits[index >>> 3] |= 1 << (index & 7);
+                word &= word - 1;
+            }
+        }
+        return new CompactSeatMap(screening.getId(), numOfRows, numOfColumns, currentVersion, Base64.getEncoder().encodeToString(bits));
+    }
+
+    private int index(int row, int column){
+        return (row - 1) * numOfColumns + (column - 1);
+    }
+
+    private static long bit(int column){
+        return 1L << (column - 1);
+    }
+
+    private static long mask(int firstColumn, int count){
+        long bits = count == Long.SIZE ? -1L : (1L << count) - 1;
+        return bits << (firstColumn - 1);
+    }
+}
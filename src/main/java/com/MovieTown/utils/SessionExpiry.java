@@ -0,0 +1,74 @@
+package com.MovieTown.utils;
+
+import com.MovieTown.beans.MySession;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//This class removes sessions that weren't active for 30 minutes.
+//Every session has one task on the timing wheel, due when it would expire if it's not touched again: when the task runs
+//it either removes the session or, if it was touched meanwhile, schedules itself for the new expiry time.
+//So the work depends on the sessions that expire and not on all the sessions that are held.
+@Service
+public class SessionExpiry {
+
+    private SessionStore sessions;
+    private TimingWheel timingWheel;
+    long limit = 1000*60*30; //You need to remove the session after 30 minutes
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong scheduled = new AtomicLong();
+
+    public SessionExpiry(SessionStore sessions, TimingWheel timingWheel) {
+        this.sessions = sessions;
+        this.timingWheel = timingWheel;
+    }
+
+    /***
+     * This method schedules the expiry of the sessions that are already in the store, such as sessions that were reloaded from a file
+     */
+    @PostConstruct
+    public void scheduleStored(){
+        long now = System.currentTimeMillis();
+        sessions.forEach((tokenHash, session) -> schedule(tokenHash, session, limit - (now - session.getLastActive())));
+    }
+
+    /***
+     * This method stores a new session and schedules its expiry
+     * @param tokenHash the client's token's hash
+     * @param session the client's session
+     */
+    public void add(long tokenHash, MySession session){
+        sessions.put(tokenHash, session);
+        schedule(tokenHash, session, limit);
+    }
+
+    public long getExpired() {
+        return expired.get();
+    }
+
+    //The number of sessions waiting on the timing wheel
+    public long getScheduled() {
+        return scheduled.get();
+    }
+
+    private void schedule(long tokenHash, MySession session, long delay){
+        scheduled.incrementAndGet();
+        timingWheel.schedule(() -> check(tokenHash, session), delay);
+    }
+
+    private void check(long tokenHash, MySession session){
+        scheduled.decrementAndGet();
+        //The token was signed out, evicted or logged in again with another session
+        if(sessions.get(tokenHash) != session)
+            return;
+        long idle = System.currentTimeMillis() - session.getLastActive();
+        if(idle < limit){
+            schedule(tokenHash, session, limit - idle);
+        }
+        else if(sessions.remove(tokenHash) != null){
+            expired.incrementAndGet();
+        }
+    }
+}
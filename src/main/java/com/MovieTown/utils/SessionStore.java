@@ -0,0 +1,39 @@
+package com.MovieTown.utils;
+
+import com.MovieTown.beans.MySession;
+
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+//This interface is used for the stores of the logged in clients' sessions, keyed by their tokens' hashes (see TokenHash).
+//The tokens are verified by the token filter before their sessions are looked up, so the hashes of two valid tokens don't collide in practice.
+public interface SessionStore {
+
+    public void put(long tokenHash, MySession session);
+
+    /***
+     * This method returns a session and marks it as active now
+     * @param tokenHash a client's token's hash
+     * @return the token's session or null if there's none
+     */
+    public MySession touch(long tokenHash);
+
+    public MySession get(long tokenHash);
+
+    public MySession remove(long tokenHash);
+
+    /***
+     * This method removes all the sessions that match the given condition
+     * @param condition a condition on a session
+     * @return the number of removed sessions
+     */
+    public int removeIf(Predicate<MySession> condition);
+
+    /***
+     * This method passes every session and its token's hash to the given action
+     * @param action an action on a token's hash and its session
+     */
+    public void forEach(BiConsumer<Long, MySession> action);
+
+    public int size();
+}
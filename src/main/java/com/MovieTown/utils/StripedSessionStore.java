@@ -0,0 +1,140 @@
+package com.MovieTown.utils;
+
+import com.MovieTown.beans.MySession;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+//This class stores the sessions in independent stripes, each one with its own lock and its own share of the capacity.
+//Every stripe keeps its sessions in access order, so touching a session is O(1) and the least recently used one is evicted when it's full.
+public class StripedSessionStore implements SessionStore {
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private volatile BiConsumer<Long, MySession> evictionListener;
+
+    public StripedSessionStore(int capacity, int concurrency) {
+        int numOfStripes = Integer.highestOneBit(Math.max(concurrency - 1, 1)) << 1;
+        this.stripes = new Stripe[numOfStripes];
+        for(int i = 0; i < numOfStripes; i++){
+            stripes[i] = new Stripe(Math.max(capacity / numOfStripes, 1));
+        }
+        this.mask = numOfStripes - 1;
+    }
+
+    /***
+     * This method sets an action that's passed every session evicted to make room for another one
+     * @param evictionListener an action on an evicted session's token's hash and the session
+     */
+    public void setEvictionListener(BiConsumer<Long, MySession> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    @Override
+    public void put(long tokenHash, MySession session) {
+        Stripe stripe = stripeOf(tokenHash);
+        Map.Entry<Long, MySession> evicted;
+        synchronized (stripe){
+            stripe.put(tokenHash, session);
+            evicted = stripe.evicted;
+            stripe.evicted = null;
+        }
+        //The listener runs outside the stripe's lock, so it can take its own locks without deadlocking with a forEach
+        BiConsumer<Long, MySession> listener = evictionListener;
+        if(evicted != null && listener != null)
+            listener.accept(evicted.getKey(), evicted.getValue());
+    }
+
+    @Override
+    public MySession touch(long tokenHash) {
+        Stripe stripe = stripeOf(tokenHash);
+        MySession session;
+        synchronized (stripe){
+            session = stripe.get(tokenHash);
+        }
+        if(session != null)
+            session.setLastActive(System.currentTimeMillis());
+        return session;
+    }
+
+    @Override
+    public MySession get(long tokenHash) {
+        Stripe stripe = stripeOf(tokenHash);
+        synchronized (stripe){
+            return stripe.get(tokenHash);
+        }
+    }
+
+    @Override
+    public MySession remove(long tokenHash) {
+        Stripe stripe = stripeOf(tokenHash);
+        synchronized (stripe){
+            return stripe.remove(tokenHash);
+        }
+    }
+
+    @Override
+    public int removeIf(Predicate<MySession> condition) {
+        int removed = 0;
+        for(Stripe stripe : stripes){
+            synchronized (stripe){
+                Iterator<MySession> iterator = stripe.values().iterator();
+                while(iterator.hasNext()){
+                    if(condition.test(iterator.next())){
+                        iterator.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void forEach(BiConsumer<Long, MySession> action) {
+        for(Stripe stripe : stripes){
+            synchronized (stripe){
+                stripe.forEach(action);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for(Stripe stripe : stripes){
+            synchronized (stripe){
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeOf(long tokenHash){
+        int hash = (int) (tokenHash ^ (tokenHash >>> 32));
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private static class Stripe extends LinkedHashMap<Long, MySession> {
+        private final int capacity;
+        //The entry evicted by the last put, it's taken by the put under the stripe's lock
+        private Map.Entry<Long, MySession> evicted;
+
+        private Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, MySession> eldest) {
+            if(size() <= capacity)
+                return false;
+            evicted = new AbstractMap.SimpleImmutableEntry<>(eldest);
+            return true;
+        }
+    }
+}
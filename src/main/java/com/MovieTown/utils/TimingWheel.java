@@ -0,0 +1,152 @@
+package com.MovieTown.utils;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//This class is a hashed timing wheel: scheduling and cancelling a task is O(1) and every tick only visits
+//the tasks of one bucket, so the cost of expiry depends on what expires and not on how much is scheduled
+public class TimingWheel implements Runnable {
+
+    private final long tickMillis;
+    private final Queue<Timeout>[] buckets;
+    private final int mask;
+    //New tasks are handed to the wheel's thread through this queue, the buckets are only touched by that thread
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final long startTime = System.currentTimeMillis();
+    private long tick;
+    private volatile boolean quit;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int numOfBuckets) {
+        if(Integer.bitCount(numOfBuckets) != 1)
+            throw new IllegalArgumentException("The number of buckets must be a power of 2");
+        this.tickMillis = tickMillis;
+        this.buckets = new Queue[numOfBuckets];
+        for(int i = 0; i < numOfBuckets; i++){
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.mask = numOfBuckets - 1;
+    }
+
+    /***
+     * This method schedules a task to run once after the given delay
+     * @param task the task to run, it runs on the wheel's thread so it must be short
+     * @param delayMillis the delay in milliseconds
+     * @return a Timeout that can cancel the task
+     */
+    public Timeout schedule(Runnable task, long delayMillis){
+        Timeout timeout = new Timeout(task, System.currentTimeMillis() - startTime + Math.max(delayMillis, 0));
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    public long getPending() {
+        return pending.get();
+    }
+
+    public long getExpired() {
+        return expired.get();
+    }
+
+    public void stop() {
+        quit = true;
+    }
+
+    /***
+     * This method runs with the server.
+     * Every tick it moves the newly scheduled tasks into their buckets and runs the due tasks of the current bucket.
+     */
+    @Override
+    public void run() {
+        try {
+            while(! quit){
+                long deadline = (tick + 1) * tickMillis;
+                long sleep = deadline - (System.currentTimeMillis() - startTime);
+                if(sleep > 0)
+                    Thread.sleep(sleep);
+                transferAdded();
+                expireBucket(buckets[(int) (tick & mask)]);
+                tick++;
+            }
+        } catch (InterruptedException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void transferAdded(){
+        Timeout timeout;
+        while((timeout = added.poll()) != null){
+            if(timeout.isCancelled())
+                continue;
+            long dueTick = Math.max(timeout.deadline / tickMillis, tick);
+            timeout.rounds = (dueTick - tick) / buckets.length;
+            buckets[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    private void expireBucket(Queue<Timeout> bucket){
+        Iterator<Timeout> iterator = bucket.iterator();
+        while(iterator.hasNext()){
+            Timeout timeout = iterator.next();
+            if(timeout.isCancelled()){
+                iterator.remove();
+            }
+            else if(timeout.rounds <= 0){
+                iterator.remove();
+                timeout.expire();
+            }
+            else {
+                timeout.rounds--;
+            }
+        }
+    }
+
+    //A handle of a scheduled task
+    public class Timeout {
+        private static final int WAITING = 0, CANCELLED = 1, EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private long rounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /***
+         * This method cancels the task if it didn't run yet
+         * @return true if the task was cancelled and false if it already ran or was cancelled before
+         */
+        public boolean cancel(){
+            if(!state.compareAndSet(WAITING, CANCELLED))
+                return false;
+            pending.decrementAndGet();
+            return true;
+        }
+
+        public boolean isCancelled(){
+            return state.get() == CANCELLED;
+        }
+
+        private void expire(){
+            if(!state.compareAndSet(WAITING, EXPIRED))
+                return;
+            pending.decrementAndGet();
+            expired.incrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+}
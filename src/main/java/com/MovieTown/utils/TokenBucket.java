@@ -0,0 +1,44 @@
+package com.MovieTown.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//A token bucket kept in a single atomic word, so taking a token is one compare-and-set and refilling needs no timer.
+//The word holds the time at which the bucket will be full again (the generic cell rate algorithm): every request moves
+//it forward by the time one token takes to refill, and a request is rejected if that would leave the bucket below empty.
+public class TokenBucket {
+
+    private final AtomicLong fullAt;
+
+    public TokenBucket(long now) {
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /***
+     * This method takes a token from the bucket if there is one
+     * @param now the current time in nanoseconds
+     * @param refillNanos the time it takes to refill one token
+     * @param capacity the maximum number of tokens in the bucket
+     * @return 0 if a token was taken, or the nanoseconds until one will be available
+     */
+    public long tryTake(long now, long refillNanos, long capacity){
+        while(true){
+            long current = fullAt.get();
+            long next = Math.max(current, now) + refillNanos;
+            long wait = next - now - capacity * refillNanos;
+            if(wait > 0)
+                return wait;
+            if(fullAt.compareAndSet(current, next))
+                return 0;
+        }
+    }
+
+    /***
+     * This method checks if the bucket is full and stayed unused for a while
+     * @param now the current time in nanoseconds
+     * @param idleNanos the time the bucket must be full to count as idle
+     * @return true if the bucket can be dropped, since a new bucket would be the same
+     */
+    public boolean isIdle(long now, long idleNanos){
+        return now - fullAt.get() > idleNanos;
+    }
+}
@@ -0,0 +1,29 @@
+package com.MovieTown.utils;
+
+import java.util.Base64;
+
+//This class hashes JWT tokens by their signature, which is an HMAC and so is already uniformly distributed
+public class TokenHash {
+
+    private TokenHash() {
+    }
+
+    /***
+     * This method returns a 64 bit hash of a token: the first 8 bytes of its signature.
+     * Anyone can build a token with a given signature, so the hash of a token that wasn't verified must not be trusted by itself.
+     * @param token a JWT token
+     * @return the token's hash
+     */
+    public static long of(String token){
+        int signature = token.lastIndexOf('.') + 1;
+        if(token.length() - signature < 11)
+            return token.hashCode();
+        //11 base64 characters hold 66 bits, the first 64 are used
+        byte[] bytes = Base64.getUrlDecoder().decode(token.substring(signature, signature + 11) + "=");
+        long hash = 0;
+        for(int i = 0; i < 8; i++){
+            hash = (hash << 8) | (bytes[i] & 0xFF);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,126 @@
+package com.MovieTown.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//This class keeps the tokens that were signed out until they expire by themselves.
+//A Bloom filter answers for almost every valid token without touching the exact set: only when all of a token's bits
+//are set, which is rare for a token that wasn't revoked, the exact set is checked.
+//Bits can't be removed from a Bloom filter, so it is rebuilt from the exact set once enough of its tokens have expired.
+@Service
+public class TokenRevocations {
+
+    private static final int NUM_OF_PROBES = 4;
+
+    private TimingWheel timingWheel;
+    private final int numOfBits;
+    //Revoked tokens and the time they expire at
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile AtomicLongArray bloom;
+    //Tokens that expired since the Bloom filter was built, their bits are still set
+    private int stale;
+    private final AtomicLong bloomHits = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    public TokenRevocations(TimingWheel timingWheel, @Value("${movietown.revocations.bloom-bits:1048576}") int numOfBits) {
+        this.timingWheel = timingWheel;
+        this.numOfBits = Math.max(Long.SIZE, numOfBits);
+        this.bloom = new AtomicLongArray(words());
+    }
+
+    /***
+     * This method revokes a token until its expiry time
+     * @param token a JWT token
+     * @param expiresAt the token's expiry time in milliseconds
+     */
+    public void revoke(String token, long expiresAt){
+        long delay = expiresAt - System.currentTimeMillis();
+        if(delay <= 0)
+            return;
+        if(revoked.put(token, expiresAt) != null)
+            return;
+        //Revocations are rare, so they are serialized with the rebuilds instead of losing bits to a rebuild
+        synchronized (this){
+            add(bloom, TokenHash.of(token));
+        }
+        timingWheel.schedule(() -> expire(token), delay);
+    }
+
+    /***
+     * This method checks if a token was revoked
+     * @param token a JWT token
+     * @param hash the token's hash by TokenHash
+     * @return true if the token was revoked and didn't expire yet and false if not
+     */
+    public boolean isRevoked(String token, long hash){
+        if(!mightContain(bloom, hash))
+            return false;
+        bloomHits.incrementAndGet();
+        if(revoked.containsKey(token))
+            return true;
+        falsePositives.incrementAndGet();
+        return false;
+    }
+
+    public int size(){
+        return revoked.size();
+    }
+
+    public long getBloomHits() {
+        return bloomHits.get();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+
+    private void expire(String token){
+        revoked.remove(token);
+        synchronized (this){
+            stale++;
+            if(stale > revoked.size())
+                rebuild();
+        }
+    }
+
+    private void rebuild(){
+        AtomicLongArray rebuilt = new AtomicLongArray(words());
+        for(String token : revoked.keySet()){
+            add(rebuilt, TokenHash.of(token));
+        }
+        bloom = rebuilt;
+        stale = 0;
+    }
+
+    private int words(){
+        return (numOfBits + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private void add(AtomicLongArray bits, long hash){
+        for(int i = 0; i < NUM_OF_PROBES; i++){
+            int bit = probe(hash, i, bits.length());
+            long mask = 1L << bit;
+            bits.getAndUpdate(bit >>> 6, word -> word | mask);
+        }
+    }
+
+    private boolean mightContain(AtomicLongArray bits, long hash){
+        for(int i = 0; i < NUM_OF_PROBES; i++){
+            int bit = probe(hash, i, bits.length());
+            if((bits.get(bit >>> 6) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    //Double hashing: the probes are h1 + i * h2, taken from the two halves of the token's hash
+    private static int probe(long hash, int i, int numOfWords){
+        int combined = (int) hash + i * (int) (hash >>> 32);
+        return (int) ((combined & 0xFFFFFFFFL) % ((long) numOfWords * Long.SIZE));
+    }
+}
@@ -0,0 +1,44 @@
+package com.MovieTown.controllers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientControllerTests {
+
+    @Test
+    void rangeWithBothBounds() {
+        assertArrayEquals(new long[]{0, 100}, ClientController.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[]{500, 1000}, ClientController.parseRange("bytes=500-999", 1000));
+        assertArrayEquals(new long[]{10, 11}, ClientController.parseRange("bytes= 10 - 10 ", 1000));
+    }
+
+    @Test
+    void rangeIsClippedToTheFile() {
+        assertArrayEquals(new long[]{900, 1000}, ClientController.parseRange("bytes=900-", 1000));
+        assertArrayEquals(new long[]{900, 1000}, ClientController.parseRange("bytes=900-5000", 1000));
+    }
+
+    @Test
+    void suffixRangeIsTheLastBytes() {
+        assertArrayEquals(new long[]{800, 1000}, ClientController.parseRange("bytes=-200", 1000));
+        assertArrayEquals(new long[]{0, 1000}, ClientController.parseRange("bytes=-5000", 1000));
+    }
+
+    @Test
+    void unsatisfiableRangeIsEmpty() {
+        assertEquals(0, ClientController.parseRange("bytes=1000-", 1000).length);
+        assertEquals(0, ClientController.parseRange("bytes=50-10", 1000).length);
+        assertEquals(0, ClientController.parseRange("bytes=-0", 1000).length);
+        assertEquals(0, ClientController.parseRange("bytes=-10", 0).length);
+    }
+
+    @Test
+    void otherRangesSendTheWholeFile() {
+        assertNull(ClientController.parseRange("items=0-10", 1000));
+        assertNull(ClientController.parseRange("bytes=0-10,20-30", 1000));
+        assertNull(ClientController.parseRange("bytes=10", 1000));
+        assertNull(ClientController.parseRange("bytes=a-b", 1000));
+        assertNull(ClientController.parseRange("bytes=-", 1000));
+    }
+}
@@ -0,0 +1,68 @@
+package com.MovieTown.filters;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTests {
+
+    private final RateLimitFilter filter = new RateLimitFilter(true, "20,40", "2,5", "1,5", "20,40", 4);
+
+    @Test
+    void routesAreGroupedByPathAndMethod() {
+        assertEquals(RouteGroup.SEATS, RouteGroup.of("/client/screenings/seats/3", "GET"));
+        assertEquals(RouteGroup.ORDERS, RouteGroup.of("/user/orders", "POST"));
+        assertEquals(RouteGroup.ORDERS, RouteGroup.of("/user/holds/1", "PUT"));
+        assertEquals(RouteGroup.ORDERS, RouteGroup.of("/user/orders/1", "DELETE"));
+        assertEquals(RouteGroup.LOGIN, RouteGroup.of("/client/login", "POST"));
+        assertEquals(RouteGroup.LOGIN, RouteGroup.of("/client/register", "POST"));
+        assertEquals(RouteGroup.OTHER, RouteGroup.of("/client/movies", "GET"));
+    }
+
+    @Test
+    void encodedLoginPathIsGroupedAsLogin() {
+        assertEquals(RouteGroup.LOGIN, RouteGroup.of(RequestPaths.of(new MockHttpServletRequest("POST", "/client/%6Cogin")), "POST"));
+        assertEquals(RouteGroup.LOGIN, RouteGroup.of(RequestPaths.of(new MockHttpServletRequest("POST", "/client;a=b/login")), "POST"));
+    }
+
+    @Test
+    void encodedLoginPathHasTheLoginLimit() throws Exception {
+        //The login limit of an address is a burst of 5 times the address factor of 4
+        for(int i = 0; i < 20; i++){
+            assertEquals(200, filter(new MockHttpServletRequest("POST", "/client/%6Cogin")).getStatus());
+        }
+        assertEquals(429, filter(new MockHttpServletRequest("POST", "/client/%6Cogin")).getStatus());
+    }
+
+    @Test
+    void malformedTokenIsLimitedByAddress() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/client/movies");
+        request.addHeader("Authorization", "Bearer aaa.bbb.!!!!!!!!!!!!!!!");
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        assertEquals(200, response.getStatus());
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void forgedTokensDontGrowTheBucketsPastTheAddressLimit() throws Exception {
+        for(int i = 0; i < 1000; i++){
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/client/movies");
+            request.addHeader("Authorization", "Bearer aaa.bbb.forged" + i + "-signature");
+            filter(request);
+        }
+        //One address bucket, and a token bucket for each request the address' burst of 40 * 4 (and its refill meanwhile) let through
+        int buckets = filter.getNumOfBuckets();
+        assertTrue(buckets > 160 && buckets < 250, "buckets: " + buckets);
+    }
+
+    private MockHttpServletResponse filter(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
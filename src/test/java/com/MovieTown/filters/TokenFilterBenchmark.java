@@ -0,0 +1,67 @@
+package com.MovieTown.filters;
+
+import com.MovieTown.beans.MySession;
+import com.MovieTown.beans.Role;
+import com.MovieTown.beans.VerifiedToken;
+import com.MovieTown.utils.LruCache;
+import com.MovieTown.utils.SessionStore;
+import com.MovieTown.utils.StripedSessionStore;
+import com.MovieTown.utils.TimingWheel;
+import com.MovieTown.utils.TokenHash;
+import com.MovieTown.utils.TokenRevocations;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//Measures the token filter's throughput with and without the verified tokens cache.
+//Run its main method from the test classpath, a cache size of 0 turns the cache off.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenFilterBenchmark {
+
+    @Param({"100000", "0"})
+    private int cacheSize;
+
+    private TokenFilter tokenFilter;
+    private String token;
+
+    @Setup
+    public void setup(){
+        Algorithm algorithm = Algorithm.HMAC256("The town of all movies");
+        JWTVerifier jwtVerifier = JWT.require(algorithm).withIssuer("Movie Town").build();
+        SessionStore sessions = new StripedSessionStore(1000, 16);
+        tokenFilter = new TokenFilter(jwtVerifier, new LruCache<Long, VerifiedToken>(cacheSize, 16), new TokenRevocations(new TimingWheel(1000, 64), 1 << 20),
+                sessions);
+        token = JWT.create().withIssuer("Movie Town").withClaim("id", 1).withClaim("name", "Movie Fan")
+                .withClaim("email", "fan@movietown.com").withClaim("type", "USER").sign(algorithm);
+        sessions.put(TokenHash.of(token), new MySession(1, Role.USER, System.currentTimeMillis()));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse filter() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/orders");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        tokenFilter.doFilterInternal(request, response, new MockFilterChain());
+        return response;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TokenFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
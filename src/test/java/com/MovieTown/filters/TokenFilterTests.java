@@ -0,0 +1,94 @@
+package com.MovieTown.filters;
+
+import com.MovieTown.beans.ClientPrincipal;
+import com.MovieTown.beans.MySession;
+import com.MovieTown.beans.Role;
+import com.MovieTown.beans.VerifiedToken;
+import com.MovieTown.controllers.AdminController;
+import com.MovieTown.utils.LruCache;
+import com.MovieTown.utils.SessionStore;
+import com.MovieTown.utils.StripedSessionStore;
+import com.MovieTown.utils.TimingWheel;
+import com.MovieTown.utils.TokenHash;
+import com.MovieTown.utils.TokenRevocations;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenFilterTests {
+
+    private TokenFilter tokenFilter;
+    private String userToken;
+
+    @BeforeEach
+    void setUp() {
+        Algorithm algorithm = Algorithm.HMAC256("The town of all movies");
+        SessionStore sessions = new StripedSessionStore(1000, 16);
+        tokenFilter = new TokenFilter(JWT.require(algorithm).withIssuer("Movie Town").build(), new LruCache<Long, VerifiedToken>(100, 4),
+                new TokenRevocations(new TimingWheel(1000, 64), 1 << 10), sessions);
+        userToken = JWT.create().withIssuer("Movie Town").withClaim("id", 1).withClaim("type", "USER").sign(algorithm);
+        sessions.put(TokenHash.of(userToken), new MySession(1, Role.USER, System.currentTimeMillis()));
+    }
+
+    @Test
+    void userTokenPassesOnUserRoutes() throws Exception {
+        MockHttpServletRequest request = request("/user/orders");
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        tokenFilter.doFilter(request, response, chain);
+        assertEquals(200, response.getStatus());
+        assertNotNull(chain.getRequest());
+        assertEquals(1, ((ClientPrincipal) request.getAttribute(ClientPrincipal.ATTRIBUTE)).getUserId());
+    }
+
+    @Test
+    void userTokenIsRejectedOnAdminRoutes() throws Exception {
+        assertRejected("/admin/users");
+    }
+
+    @Test
+    void encodedAdminPathIsRejectedForUserToken() throws Exception {
+        assertRejected("/%61dmin/users");
+        assertRejected("/admin;x=1/users");
+        assertRejected("//admin/users");
+    }
+
+    @Test
+    void encodedPathsAreDecodedBeforeTheyAreChecked() {
+        assertEquals(Role.ADMINISTRATOR, TokenFilter.requiredRole(RequestPaths.of(new MockHttpServletRequest("GET", "/%61dmin/users"))));
+        assertEquals(Role.USER, TokenFilter.requiredRole(RequestPaths.of(new MockHttpServletRequest("GET", "/%75ser/orders"))));
+    }
+
+    @Test
+    void roleInterceptorRejectsUserOnAdminController() throws Exception {
+        HandlerMethod handler = new HandlerMethod(new AdminController(null, null), AdminController.class.getMethod("getMetrics"));
+        MockHttpServletRequest request = request("/admin/metrics");
+        request.setAttribute(ClientPrincipal.ATTRIBUTE, new ClientPrincipal(new VerifiedToken(userToken, Role.USER, 1, Long.MAX_VALUE),
+                TokenHash.of(userToken), new MySession(1, Role.USER, System.currentTimeMillis())));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(new RoleInterceptor().preHandle(request, response, handler));
+        assertEquals(401, response.getStatus());
+        assertFalse(new RoleInterceptor().preHandle(request("/admin/metrics"), new MockHttpServletResponse(), handler));
+    }
+
+    private void assertRejected(String uri) throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        tokenFilter.doFilter(request(uri), response, chain);
+        assertEquals(401, response.getStatus(), uri);
+        assertNull(chain.getRequest(), uri);
+    }
+
+    private MockHttpServletRequest request(String uri){
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.addHeader("Authorization", "Bearer " + userToken);
+        return request;
+    }
+}
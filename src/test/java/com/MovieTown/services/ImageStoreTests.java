@@ -0,0 +1,51 @@
+package com.MovieTown.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageStoreTests {
+
+    @TempDir
+    Path directory;
+
+    private static String base64(String content){
+        return Base64.getEncoder().encodeToString(content.getBytes());
+    }
+
+    @Test
+    void everyVersionHasItsOwnFile() throws IOException {
+        ImageStore imageStore = new ImageStore(directory.toString(), null);
+        long first = imageStore.save(7, base64("first poster"));
+        assertEquals("first poster", Files.readString(imageStore.getPath(7, first)));
+        long second = imageStore.save(7, "data:image/png;base64," + base64("second poster"));
+        assertNotEquals(first, second);
+        assertEquals("second poster", Files.readString(imageStore.getPath(7, second)));
+        //The previous version's file is deleted once the new one is written
+        assertFalse(Files.exists(imageStore.getPath(7, first)));
+    }
+
+    @Test
+    void samePosterKeepsItsVersion() throws IOException {
+        ImageStore imageStore = new ImageStore(directory.toString(), null);
+        long first = imageStore.save(7, base64("poster"));
+        assertEquals(first, imageStore.save(7, base64("poster")));
+        assertTrue(Files.exists(imageStore.getPath(7, first)));
+    }
+
+    @Test
+    void deleteRemovesOnlyTheMoviesPosters() throws IOException {
+        ImageStore imageStore = new ImageStore(directory.toString(), null);
+        long version = imageStore.save(1, base64("poster"));
+        long other = imageStore.save(12, base64("poster"));
+        imageStore.delete(1);
+        assertFalse(Files.exists(imageStore.getPath(1, version)));
+        assertTrue(Files.exists(imageStore.getPath(12, other)));
+    }
+}
@@ -0,0 +1,61 @@
+package com.MovieTown.utils;
+
+import com.MovieTown.beans.ExportFormat;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportWriterTests {
+
+    private static String export(ExportFormat format, Object[]... rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(ExportWriter writer = ExportWriter.of(format, out)){
+            writer.writeHeader("id", "name", "time");
+            for(Object[] row : rows){
+                writer.writeRow(row);
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void csvHasAHeaderAndPlainValues() throws IOException {
+        assertEquals("id,name,time\r\n1,Dana,1970-01-01T00:00:00Z\r\n2,,\r\n",
+                export(ExportFormat.CSV, new Object[]{1, "Dana", new Date(0)}, new Object[]{2L, null, null}));
+    }
+
+    @Test
+    void csvQuotesSeparatorsQuotesAndLineBreaks() throws IOException {
+        assertEquals("id,name,time\r\n1,\"Smith, Dana\",\r\n2,\"say \"\"hi\"\"\",\r\n3,\"two\nlines\",\r\n4,\"a\rb\",\r\n",
+                export(ExportFormat.CSV, new Object[]{1, "Smith, Dana", null}, new Object[]{2, "say \"hi\"", null},
+                        new Object[]{3, "two\nlines", null}, new Object[]{4, "a\rb", null}));
+    }
+
+    @Test
+    void csvPrefixesFormulas() throws IOException {
+        assertEquals("id,name,time\r\n1,'=1+1,\r\n2,'@SUM(A1),\r\n3,\"'-2,3\",\r\n4,'+1,\r\n",
+                export(ExportFormat.CSV, new Object[]{1, "=1+1", null}, new Object[]{2, "@SUM(A1)", null},
+                        new Object[]{3, "-2,3", null}, new Object[]{4, "+1", null}));
+    }
+
+    @Test
+    void csvIsUtf8() throws IOException {
+        assertEquals("id,name,time\r\n1,Zoë,\r\n", export(ExportFormat.CSV, new Object[]{1, "Zoë", null}));
+    }
+
+    @Test
+    void ndJsonHasAnObjectPerLine() throws IOException {
+        assertEquals("{\"id\":1,\"name\":\"say \\\"hi\\\"\",\"time\":\"1970-01-01T00:00:00Z\"}\n{\"id\":2,\"name\":null,\"time\":null}\n",
+                export(ExportFormat.NDJSON, new Object[]{1, "say \"hi\"", new Date(0)}, new Object[]{2, null, null}));
+    }
+
+    @Test
+    void emptyNdJsonIsEmpty() throws IOException {
+        assertEquals("", export(ExportFormat.NDJSON));
+    }
+}
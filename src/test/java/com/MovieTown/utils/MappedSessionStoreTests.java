@@ -0,0 +1,51 @@
+package com.MovieTown.utils;
+
+import com.MovieTown.beans.MySession;
+import com.MovieTown.beans.Role;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedSessionStoreTests {
+
+    @TempDir
+    Path directory;
+
+    //A single stripe of the given capacity, whose evictions are logged like the server does it
+    private MappedSessionStore open(int capacity) throws IOException {
+        StripedSessionStore sessions = new StripedSessionStore(capacity, 1);
+        MappedSessionStore store = new MappedSessionStore(sessions, directory.resolve("sessions"), capacity * 2, 60000);
+        sessions.setEvictionListener(store::evicted);
+        return store;
+    }
+
+    @Test
+    void sessionsSurviveARestart() throws IOException {
+        MappedSessionStore store = open(10);
+        store.put(1, new MySession(5, Role.USER, 1000));
+        store.put(2, new MySession(6, Role.ADMINISTRATOR, 2000));
+        store.remove(2);
+        //The file isn't compacted, so the records are reloaded from the log
+        MappedSessionStore reopened = open(10);
+        assertEquals(5, reopened.get(1).getUserId());
+        assertNull(reopened.get(2));
+    }
+
+    @Test
+    void evictedSessionsDontComeBackAfterARestart() throws IOException {
+        MappedSessionStore store = open(2);
+        for(int i = 1; i <= 4; i++){
+            store.put(i, new MySession(i, Role.USER, i));
+        }
+        assertNull(store.get(1));
+        MappedSessionStore reopened = open(10);
+        assertNull(reopened.get(1));
+        assertNull(reopened.get(2));
+        assertEquals(3, reopened.get(3).getUserId());
+        assertEquals(4, reopened.get(4).getUserId());
+    }
+}
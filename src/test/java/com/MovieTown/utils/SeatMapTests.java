@@ -0,0 +1,113 @@
+package com.MovieTown.utils;
+
+import com.MovieTown.beans.Cinema;
+import com.MovieTown.beans.Screening;
+import com.MovieTown.beans.Seat;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatMapTests {
+
+    private static SeatMap seatMap(int numOfRows, int numOfColumns){
+        Screening screening = new Screening(new Cinema("Haifa", numOfRows, numOfColumns), null, new Date());
+        return new SeatMap(screening, Collections.emptyList());
+    }
+
+    @Test
+    void bestBlockIsClosestToTheCenter() {
+        SeatMap seatMap = seatMap(5, 10);
+        assertArrayEquals(new int[]{3, 5}, seatMap.findBestBlock(2));
+        assertArrayEquals(new int[]{3, 4}, seatMap.findBestBlock(4));
+        assertArrayEquals(new int[]{3, 1}, seatMap.findBestBlock(10));
+    }
+
+    @Test
+    void bestBlockSkipsReservedSeats() {
+        SeatMap seatMap = seatMap(3, 5);
+        seatMap.setReserved(2, 3);
+        //The center row has no free block of 3, and the rows around it are equally close
+        assertArrayEquals(new int[]{1, 2}, seatMap.findBestBlock(3));
+        //The blocks of 2 beside the reserved seat are further from the center than the middle of the next row
+        assertArrayEquals(new int[]{1, 2}, seatMap.findBestBlock(2));
+    }
+
+    @Test
+    void bestBlockOfAFullWideRow() {
+        SeatMap seatMap = seatMap(1, 64);
+        assertArrayEquals(new int[]{1, 1}, seatMap.findBestBlock(64));
+        seatMap.setReserved(1, 64);
+        assertNull(seatMap.findBestBlock(64));
+        assertArrayEquals(new int[]{1, 1}, seatMap.findBestBlock(63));
+    }
+
+    @Test
+    void noBestBlockForInvalidCounts() {
+        SeatMap seatMap = seatMap(2, 4);
+        assertNull(seatMap.findBestBlock(0));
+        assertNull(seatMap.findBestBlock(5));
+        assertTrue(seatMap.tryReserve(1, 1, 4));
+        assertTrue(seatMap.tryReserve(2, 1, 4));
+        assertNull(seatMap.findBestBlock(1));
+    }
+
+    @Test
+    void tryReserveIsAllOrNothing() {
+        SeatMap seatMap = seatMap(2, 8);
+        assertTrue(seatMap.tryReserve(1, 3, 3));
+        assertFalse(seatMap.tryReserve(1, 5, 2));
+        //The failed block's free seat wasn't taken
+        assertFalse(seatMap.isReserved(1, 6));
+        assertTrue(seatMap.tryReserve(1, 6, 3));
+        seatMap.release(1, 3, 3);
+        assertFalse(seatMap.isReserved(1, 4));
+        assertTrue(seatMap.isReserved(1, 6));
+    }
+
+    @Test
+    void versionKeepsGrowingAcrossReloads() throws InterruptedException {
+        SeatMap seatMap = seatMap(2, 4);
+        for(int i = 1; i <= 4; i++){
+            seatMap.setReserved(1, i);
+        }
+        Thread.sleep(2);
+        //A reloaded seat map with different seats never repeats a version of the previous one
+        assertTrue(seatMap(2, 4).getVersion() > seatMap.getVersion());
+        assertTrue(seatMap.getVersion() < 1L << 53);
+    }
+
+    @Test
+    void tryReserveGrantsEachSeatOnce() throws InterruptedException {
+        SeatMap seatMap = seatMap(1, 64);
+        int[] granted = new int[8];
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < granted.length; t++){
+            int index = t;
+            threads.add(new Thread(() -> {
+                for(int column = 1; column <= 63; column++){
+                    if(seatMap.tryReserve(1, column, 2))
+                        granted[index] += 2;
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for(Thread thread : threads){
+            thread.join();
+        }
+        int total = 0;
+        for(int seats : granted){
+            total += seats;
+        }
+        int reserved = 0;
+        for(Seat seat : seatMap.getSeats()){
+            if(seat.isReserved())
+                reserved++;
+        }
+        assertEquals(reserved, total);
+    }
+}
@@ -0,0 +1,73 @@
+package com.MovieTown.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTests {
+
+    //A small wheel, so a delay longer than a rotation takes several rounds
+    private final TimingWheel wheel = new TimingWheel(10, 4);
+    private final Thread thread = new Thread(wheel);
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        wheel.stop();
+        thread.join();
+    }
+
+    @Test
+    void taskRunsAfterItsDelay() throws InterruptedException {
+        thread.start();
+        CountDownLatch ran = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.schedule(ran::countDown, 100);
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+        assertEquals(1, wheel.getExpired());
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    void cancelledTaskNeverRuns() throws InterruptedException {
+        thread.start();
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, 50);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        CountDownLatch later = new CountDownLatch(1);
+        wheel.schedule(later::countDown, 100);
+        assertTrue(later.await(2, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertEquals(1, wheel.getExpired());
+    }
+
+    @Test
+    void expiredTaskCantBeCancelled() throws InterruptedException {
+        thread.start();
+        CountDownLatch ran = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = wheel.schedule(ran::countDown, 0);
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+        assertFalse(timeout.isCancelled());
+    }
+
+    @Test
+    void failingTaskDoesntStopTheWheel() throws InterruptedException {
+        thread.start();
+        wheel.schedule(() -> { throw new IllegalStateException("expected"); }, 0);
+        CountDownLatch ran = new CountDownLatch(1);
+        wheel.schedule(ran::countDown, 30);
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void bucketsMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(10, 6));
+    }
+}
@@ -0,0 +1,62 @@
+package com.MovieTown.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTests {
+
+    //One token every 100 nanoseconds and a burst of 3, with the time given explicitly
+    private static final long REFILL = 100, CAPACITY = 3;
+
+    @Test
+    void burstIsTakenAtOnceThenRequestsWait() {
+        TokenBucket bucket = new TokenBucket(0);
+        for(int i = 0; i < CAPACITY; i++){
+            assertEquals(0, bucket.tryTake(1000, REFILL, CAPACITY));
+        }
+        assertEquals(REFILL, bucket.tryTake(1000, REFILL, CAPACITY));
+    }
+
+    @Test
+    void tokensRefillOverTime() {
+        TokenBucket bucket = new TokenBucket(0);
+        for(int i = 0; i < CAPACITY; i++){
+            bucket.tryTake(1000, REFILL, CAPACITY);
+        }
+        assertEquals(40, bucket.tryTake(1060, REFILL, CAPACITY));
+        assertEquals(0, bucket.tryTake(1100, REFILL, CAPACITY));
+        assertTrue(bucket.tryTake(1100, REFILL, CAPACITY) > 0);
+    }
+
+    @Test
+    void rejectedRequestsDontTakeTokens() {
+        TokenBucket bucket = new TokenBucket(0);
+        for(int i = 0; i < CAPACITY; i++){
+            bucket.tryTake(1000, REFILL, CAPACITY);
+        }
+        for(int i = 0; i < 10; i++){
+            assertTrue(bucket.tryTake(1000, REFILL, CAPACITY) > 0);
+        }
+        assertEquals(0, bucket.tryTake(1100, REFILL, CAPACITY));
+    }
+
+    @Test
+    void unusedBucketDoesntSaveMoreThanItsCapacity() {
+        TokenBucket bucket = new TokenBucket(0);
+        for(int i = 0; i < CAPACITY; i++){
+            assertEquals(0, bucket.tryTake(1_000_000, REFILL, CAPACITY));
+        }
+        assertTrue(bucket.tryTake(1_000_000, REFILL, CAPACITY) > 0);
+    }
+
+    @Test
+    void bucketIsIdleOnceFullForLongEnough() {
+        TokenBucket bucket = new TokenBucket(0);
+        bucket.tryTake(1000, REFILL, CAPACITY);
+        //The bucket is full again at 1100
+        assertFalse(bucket.isIdle(1100, 500));
+        assertFalse(bucket.isIdle(1600, 500));
+        assertTrue(bucket.isIdle(1601, 500));
+    }
+}